@@ -16,9 +16,18 @@
 package org.terasology;
 
 import org.junit.After;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.terasology.engine.GameThread;
 import org.terasology.recording.RecordAndReplayStatus;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.fail;
+
 /**
  * An environment that extends {@link ReplayTestingEnvironment} and sets the workflow of a replay test used for
  * acceptance testing.
@@ -26,9 +35,29 @@ import org.terasology.recording.RecordAndReplayStatus;
  * To write tests that uses this class, it is necessary to extend it, write implementations for the abstract methods and
  * write a test method that calls {@link #runTest(String, boolean)}. For more information about the abstract methods and
  * example of implementation, check their JavaDoc and the ExampleAcceptanceTest class.
+ * <p>
+ * Instead of hand-written expected values, tests can also override {@link #selectGoldenState(SnapshotSelection)} to
+ * compare the selected state at the start and at the end of the replay against golden snapshots. The golden snapshots
+ * are recorded when the system property {@value #RECORD_GOLDEN_PROPERTY} is "true"; otherwise a missing golden snapshot
+ * fails the test.
+ * <p>
+ * Every passing run also appends its {@link ReplayPerformanceRecord} to the {@link ReplayPerformanceHistory} of its
+ * recording, which {@link ReplayPerformanceComparison} checks for slowdowns.
  */
 public abstract class AcceptanceTestEnvironment {
 
+    /** The system property that makes tests record their golden snapshots instead of comparing against them. */
+    public static final String RECORD_GOLDEN_PROPERTY = "replay.recordGolden";
+    /** The system properties that replace the replay title and the headless flag given to {@link #runTest(String, boolean)}. */
+    public static final String TITLE_PROPERTY = "replay.title";
+    public static final String HEADLESS_PROPERTY = "replay.headless";
+
+    private static final Logger logger = LoggerFactory.getLogger(AcceptanceTestEnvironment.class);
+    private static final Path GOLDEN_PATH = Paths.get("modules/TestReplayModule/golden");
+    private static final float GOLDEN_TOLERANCE = 0.0001f;
+
+    private static volatile ReplayPerformanceRecord lastPerformanceRecord;
+
     private String recordingTitle;
     private boolean isHeadless;
     private ReplayTestingEnvironment environment = new ReplayTestingEnvironment();
@@ -55,19 +84,79 @@ public abstract class AcceptanceTestEnvironment {
     }
 
     /**
-     * Executes the replay test.
+     * Executes the replay test. The system properties {@value #TITLE_PROPERTY} and {@value #HEADLESS_PROPERTY}, such as
+     * the ones set by {@link ReplayDaemon} for its jobs, replace the given title and headless flag when they are set.
      * @param replayTitle the title of the replay.
      * @param headless if the engine should be headless.
      */
     protected void runTest(String replayTitle, boolean headless) throws Exception {
-        this.isHeadless = headless;
-        this.recordingTitle = replayTitle;
+        String headlessProperty = System.getProperty(HEADLESS_PROPERTY);
+        this.isHeadless = headlessProperty != null ? Boolean.parseBoolean(headlessProperty) : headless;
+        this.recordingTitle = System.getProperty(TITLE_PROPERTY, replayTitle);
+        ReplayPerformanceRecord performance = ReplayPerformanceRecord.start(recordingTitle, getClass().getSimpleName(), isHeadless);
         replayThread.start();
         TestUtils.waitUntil(() -> (environment.isInitialised() && environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAYING));
+        performance.markReplaying();
         testOnReplayStart();
+        checkGoldenState("start");
         testDuringReplay();
         TestUtils.waitUntil(() -> environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAY_FINISHED);
+        TestUtils.waitUntil(() -> !environment.getReplayMetrics().isRunning());
+        performance.finish(environment.getReplayMetrics());
+        lastPerformanceRecord = performance;
         testOnReplayEnd();
+        checkGoldenState("end");
+        savePerformance(performance);
+    }
+
+    /**
+     * Appends the performance of the run to the history of its recording once all of its checks passed, so failing runs
+     * do not become part of the baseline. A failure to write the history is logged, but does not fail the test.
+     * @param performance the performance of the finished replay.
+     */
+    private void savePerformance(ReplayPerformanceRecord performance) {
+        logger.info("Replay performance: {}", performance);
+        try {
+            ReplayPerformanceHistory.getDefault().append(performance);
+        } catch (IOException e) {
+            logger.warn("Could not save the replay performance of {}", recordingTitle, e);
+        }
+    }
+
+    /**
+     * Compares the state selected by {@link #selectGoldenState(SnapshotSelection)} against the golden snapshot of the
+     * phase, or records it as the golden snapshot if {@value #RECORD_GOLDEN_PROPERTY} is "true".
+     * @param phase the phase of the replay.
+     */
+    private void checkGoldenState(String phase) throws Exception {
+        SnapshotSelection selection = new SnapshotSelection();
+        selectGoldenState(selection);
+        StateSnapshot snapshot = selection.getSnapshot();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        Path goldenFile = GOLDEN_PATH.resolve(getClass().getSimpleName()).resolve(phase + ".snapshot");
+        if (Boolean.getBoolean(RECORD_GOLDEN_PROPERTY)) {
+            snapshot.write(goldenFile);
+            logger.warn("Recorded golden state {}", goldenFile.toAbsolutePath());
+            return;
+        }
+        if (!Files.exists(goldenFile)) {
+            fail("No golden state for the replay " + phase + " at " + goldenFile + "; run with -D" + RECORD_GOLDEN_PROPERTY
+                    + "=true to record it");
+        }
+        String difference = snapshot.compare(StateSnapshot.read(goldenFile), GOLDEN_TOLERANCE);
+        if (difference != null) {
+            fail("Golden state of the replay " + phase + " does not match " + goldenFile + ": " + difference);
+        }
+    }
+
+    /**
+     * @return the performance of the last replay that finished in this JVM, whether its checks passed or not, or null if
+     * none did. Used by {@link ReplayDaemon} to send the metrics of each job back.
+     */
+    public static ReplayPerformanceRecord getLastPerformanceRecord() {
+        return lastPerformanceRecord;
     }
 
     /**
@@ -123,4 +212,18 @@ public abstract class AcceptanceTestEnvironment {
      */
     protected abstract void testOnReplayEnd() throws Exception;
 
+    /**
+     * This method is executed by {@link #runTest(String, boolean)} right after {@link #testOnReplayStart()} and right
+     * after {@link #testOnReplayEnd()}. It selects the state that is compared against the golden snapshots of those
+     * phases, so their expected values do not need to be written by hand. Example:
+     * <pre>   {@code
+     * EntityRef character = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
+     * selection.location("player", character); // checks the player's position at the start and at the end.
+     * }</pre>
+     * By default, nothing is selected and no golden snapshot is used.
+     * @param selection the selection of state stored in the snapshot.
+     */
+    protected void selectGoldenState(SnapshotSelection selection) {
+    }
+
 }
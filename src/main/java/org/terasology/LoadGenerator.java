@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+import org.terasology.entitySystem.entity.EntityManager;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.event.Event;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Fans the events of one recording out to many {@link LoopbackClient}s and sends them into a running server.
+ * <p>
+ * Each client gets a character entity of its own on the server. The events a client sends are decoded by a
+ * {@link RecordedEventDecoder} and sent to the client's character, while the entities the events target are resolved
+ * through the {@link RecordedEntityIdTable} of the recording, as in a replay.
+ */
+public class LoadGenerator {
+
+    public static final String CHARACTER_PREFAB = "engine:player";
+    public static final int CLIENT_QUEUE_CAPACITY = 1024;
+
+    private final List<LoopbackClient> clients = Lists.newArrayList();
+    private final RecordedEntityIdTable entityIdTable;
+    private final LoadTestReport report;
+    private RecordedEventDecoder decoder;
+    private long startGameTimeMs;
+
+    /**
+     * @param recordingPath the folder of the recording replayed by all clients.
+     * @param clientCount the amount of simulated clients.
+     * @param clientOffsetMs the time between the start of one client and the next.
+     * @throws IOException
+     */
+    public LoadGenerator(Path recordingPath, int clientCount, long clientOffsetMs) throws IOException {
+        this.entityIdTable = RecordedEntityIdTable.load(recordingPath);
+        this.report = new LoadTestReport(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            clients.add(new LoopbackClient(i, recordingPath, i * clientOffsetMs, CLIENT_QUEUE_CAPACITY));
+        }
+    }
+
+    /**
+     * Creates the characters of the clients and connects them. Must be called on the game thread once the server is
+     * in game.
+     * @param entityManager the entity manager of the server.
+     * @param gameTimeMs the current game time, from which the clients' offsets are counted.
+     */
+    public void start(EntityManager entityManager, long gameTimeMs) {
+        entityIdTable.resolve(entityManager::getEntity, () -> EntityRef.NULL);
+        decoder = new RecordedEventDecoder(entityIdTable::get);
+        startGameTimeMs = gameTimeMs;
+        for (LoopbackClient client : clients) {
+            client.setCharacter(entityManager.create(CHARACTER_PREFAB));
+            client.connect();
+        }
+    }
+
+    /**
+     * Sends the due events of every client. Must be called on the game thread, once per tick.
+     * @param gameTimeMs the current game time.
+     */
+    public void tick(long gameTimeMs) {
+        entityIdTable.refresh();
+        long elapsedMs = gameTimeMs - startGameTimeMs;
+        for (LoopbackClient client : clients) {
+            client.dispatchDueEvents(elapsedMs, entry -> send(client, entry));
+        }
+        report.setFailedEvents(decoder.getFailedCount());
+    }
+
+    private void send(LoopbackClient client, RecordedEventEntry entry) {
+        Event event = decoder.decode(entry);
+        if (event != null) {
+            client.getCharacter().send(event);
+            report.recordDispatchedEvents(1);
+        }
+    }
+
+    /**
+     * @return the amount of events waiting in the queues of all clients.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (LoopbackClient client : clients) {
+            depth += client.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * @return if all clients have sent their whole recording.
+     */
+    public boolean isFinished() {
+        for (LoopbackClient client : clients) {
+            if (!client.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects all clients and destroys their characters.
+     */
+    public void stop() {
+        for (LoopbackClient client : clients) {
+            client.close();
+            client.getCharacter().destroy();
+        }
+    }
+
+    public LoadTestReport getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import java.util.Arrays;
+
+/**
+ * The measurements of a load test run by {@link ReplayTestingEnvironment#openLoadTest(String, int, long)}: server tick
+ * time, the depth of the clients' event queues and the heap used, sampled once per server tick.
+ */
+public class LoadTestReport {
+
+    private final int clientCount;
+    private long[] tickNanos = new long[1024];
+    private int tickCount;
+    private long totalQueueDepth;
+    private int maxQueueDepth;
+    private long peakUsedHeap;
+    private long dispatchedEvents;
+    private int failedEvents;
+
+    public LoadTestReport(int clientCount) {
+        this.clientCount = clientCount;
+    }
+
+    /**
+     * Records the measurements of one server tick.
+     * @param nanos how long the tick took.
+     * @param queueDepth the amount of events waiting in the queues of all clients after the tick.
+     * @param usedHeap the heap used after the tick, in bytes.
+     */
+    void recordTick(long nanos, int queueDepth, long usedHeap) {
+        if (tickCount == tickNanos.length) {
+            tickNanos = Arrays.copyOf(tickNanos, tickCount * 2);
+        }
+        tickNanos[tickCount++] = nanos;
+        totalQueueDepth += queueDepth;
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        peakUsedHeap = Math.max(peakUsedHeap, usedHeap);
+    }
+
+    void recordDispatchedEvents(int amount) {
+        dispatchedEvents += amount;
+    }
+
+    void setFailedEvents(int amount) {
+        failedEvents = amount;
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    public long getDispatchedEvents() {
+        return dispatchedEvents;
+    }
+
+    /**
+     * @return how many events were skipped because they could not be decoded.
+     */
+    public int getFailedEvents() {
+        return failedEvents;
+    }
+
+    public double getMeanTickMs() {
+        long total = 0;
+        for (int i = 0; i < tickCount; i++) {
+            total += tickNanos[i];
+        }
+        return tickCount > 0 ? total / (tickCount * 1_000_000.0) : 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the tick time under which the given percentage of ticks ran, in milliseconds.
+     */
+    public double getTickMsPercentile(double percentile) {
+        if (tickCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(tickNanos, tickCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * tickCount) - 1;
+        return sorted[Math.max(0, Math.min(index, tickCount - 1))] / 1_000_000.0;
+    }
+
+    public double getMeanQueueDepth() {
+        return tickCount > 0 ? (double) totalQueueDepth / tickCount : 0;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getPeakUsedHeap() {
+        return peakUsedHeap;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d clients: %d ticks, tick mean %.2f ms, p95 %.2f ms, max %.2f ms, "
+                        + "queue depth mean %.1f max %d, peak heap %d MB, %d events sent, %d skipped",
+                clientCount, tickCount, getMeanTickMs(), getTickMsPercentile(95), getTickMsPercentile(100),
+                getMeanQueueDepth(), maxQueueDepth, peakUsedHeap / (1024 * 1024), dispatchedEvents, failedEvents);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.entitySystem.entity.EntityRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A simulated client of a load test that sends the events of a recording to the server through an in-process queue.
+ * <p>
+ * A background thread plays the part of the client's connection: it streams the recording from disk into a bounded
+ * queue, which the server drains on its own thread with {@link #dispatchDueEvents(long, Consumer)}. The recording is
+ * shifted in time by the client's start offset, so many clients can replay the same recording without acting in lockstep.
+ */
+public class LoopbackClient implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackClient.class);
+
+    private final int clientIndex;
+    private final Path recordingPath;
+    private final long startOffsetMs;
+    private final BlockingQueue<RecordedEventEntry> queue;
+    private final Thread connectionThread;
+    private volatile boolean isConnectionClosed;
+    private long firstTimestamp = -1;
+    private EntityRef character = EntityRef.NULL;
+
+    /**
+     * @param clientIndex the number of the client in the load test.
+     * @param recordingPath the folder of the recording replayed by the client.
+     * @param startOffsetMs how long after the start of the load test the client sends its first event.
+     * @param queueCapacity how many events can wait in the queue before the connection thread blocks.
+     */
+    public LoopbackClient(int clientIndex, Path recordingPath, long startOffsetMs, int queueCapacity) {
+        this.clientIndex = clientIndex;
+        this.recordingPath = recordingPath;
+        this.startOffsetMs = startOffsetMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.connectionThread = new Thread(this::streamRecording, "LoopbackClient-" + clientIndex);
+        this.connectionThread.setDaemon(true);
+    }
+
+    /**
+     * Connects the client, which starts streaming its recording.
+     */
+    public void connect() {
+        connectionThread.start();
+    }
+
+    private void streamRecording() {
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            while (reader.next()) {
+                queue.put(RecordedEventEntry.of(reader));
+            }
+        } catch (IOException e) {
+            logger.error("Loopback client {} could not read {}", clientIndex, recordingPath, e);
+        } catch (InterruptedException e) {
+            logger.debug("Loopback client {} was disconnected", clientIndex);
+        } finally {
+            isConnectionClosed = true;
+        }
+    }
+
+    /**
+     * Passes every queued event that is due to the server, in recorded order.
+     * @param elapsedMs the time since the start of the load test.
+     * @param server receives the due events.
+     * @return the amount of events passed to the server.
+     */
+    public int dispatchDueEvents(long elapsedMs, Consumer<RecordedEventEntry> server) {
+        int dispatched = 0;
+        RecordedEventEntry entry;
+        while ((entry = queue.peek()) != null) {
+            if (firstTimestamp < 0) {
+                firstTimestamp = entry.getTimestamp();
+            }
+            if (entry.getTimestamp() - firstTimestamp + startOffsetMs > elapsedMs) {
+                break;
+            }
+            server.accept(queue.poll());
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    /**
+     * @return the amount of events received from the connection but not dispatched yet.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return if the client has sent its whole recording and the server has dispatched all of it.
+     */
+    public boolean isFinished() {
+        return isConnectionClosed && queue.isEmpty();
+    }
+
+    public int getClientIndex() {
+        return clientIndex;
+    }
+
+    /**
+     * @return the server-side entity that stands in for the character of this client.
+     */
+    public EntityRef getCharacter() {
+        return character;
+    }
+
+    public void setCharacter(EntityRef character) {
+        this.character = character;
+    }
+
+    @Override
+    public void close() {
+        connectionThread.interrupt();
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import org.terasology.math.geom.Vector3f;
+import org.terasology.math.geom.Vector3i;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The recorded trajectory of the player, loaded from "state_event_position.json" and "direction_origin_list.json", so
+ * tests can find points of a replay without running it first. Example of a checkpoint:
+ * <pre>   {@code
+ * PlayerTrajectory trajectory = environment.getPlayerTrajectory();
+ * int eventIndex = trajectory.getFirstEventIndexWithin(new Vector3i(-73, 43, 84), 2); // the player reaches the tree.
+ * TestUtils.waitUntil(() -> eventSystem.getLastRecordedEventIndex() >= eventIndex);
+ * }</pre>
+ * <p>
+ * Each sample of the trajectory is the position and velocity of the player after one of the recorded
+ * CharacterMoveInputEvents, matched by the sequence number of the event. Move events without a recorded position are
+ * left out. The samples are stored in primitive arrays ordered by time, so finding the sample at a timestamp is a
+ * binary search. The positions are also indexed by a k-d tree whose nodes know the earliest sample below them, so
+ * finding the first time the player got close to a point only visits the parts of the tree that can improve the answer.
+ */
+public class PlayerTrajectory {
+
+    /** The recorder of the direction and origin of the player's attacks. */
+    public static final int ATTACK = 0;
+    /** The recorder of the direction and origin of the player's activations, such as using an item. */
+    public static final int ACTIVATE = 1;
+
+    private static final String MOVE_EVENT_CLASS = "org.terasology.logic.characters.CharacterMoveInputEvent";
+    /** The sequence number of a move event, which is the key of its state in "state_event_position.json". */
+    private static final String SEQUENCE_NUMBER = "sequeceNumber";
+    private static final int LEAF_SIZE = 8;
+
+    private final int size;
+    private final int[] eventIndices;
+    private final long[] timestamps;
+    private final float[] positions;
+    private final float[] velocities;
+    private final float[][] directionOrigins;
+
+    /* The k-d tree: samples ordered by node, and for each node its first sample, bounds and split axis. */
+    private int[] treeSamples;
+    private int[] nodeFirstSample;
+    private float[] nodeBounds;
+    private int nodeCount;
+
+    PlayerTrajectory(int[] eventIndices, long[] timestamps, float[] positions, float[] velocities, float[][] directionOrigins) {
+        this.size = eventIndices.length;
+        this.eventIndices = eventIndices;
+        this.timestamps = timestamps;
+        this.positions = positions;
+        this.velocities = velocities;
+        this.directionOrigins = directionOrigins;
+        buildTree();
+    }
+
+    /**
+     * @param recordingPath the folder of the recording.
+     * @return the trajectory of the player in the recording, which is empty if the recording has no positions.
+     * @throws IOException
+     */
+    public static PlayerTrajectory load(Path recordingPath) throws IOException {
+        Map<Long, float[]> states = readStatePositions(recordingPath.resolve(RecordingFiles.STATE_EVENT_POSITION));
+        int[] eventIndices = new int[256];
+        long[] timestamps = new long[256];
+        float[] positions = new float[256 * 3];
+        float[] velocities = new float[256 * 3];
+        int sampleCount = 0;
+        if (!states.isEmpty()) {
+            try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+                while (reader.next()) {
+                    float[] state = MOVE_EVENT_CLASS.equals(reader.getEventClass()) ? getState(states, reader.getEventData()) : null;
+                    if (state == null) {
+                        continue;
+                    }
+                    if (sampleCount == eventIndices.length) {
+                        eventIndices = Arrays.copyOf(eventIndices, sampleCount * 2);
+                        timestamps = Arrays.copyOf(timestamps, sampleCount * 2);
+                        positions = Arrays.copyOf(positions, sampleCount * 6);
+                        velocities = Arrays.copyOf(velocities, sampleCount * 6);
+                    }
+                    eventIndices[sampleCount] = (int) reader.getIndex();
+                    timestamps[sampleCount] = reader.getTimestamp();
+                    System.arraycopy(state, 0, positions, sampleCount * 3, 3);
+                    System.arraycopy(state, 3, velocities, sampleCount * 3, 3);
+                    sampleCount++;
+                }
+            }
+        }
+
+        float[][] directionOrigins = readDirectionOrigins(recordingPath.resolve(RecordingFiles.DIRECTION_ORIGIN_LIST));
+        return new PlayerTrajectory(Arrays.copyOf(eventIndices, sampleCount), Arrays.copyOf(timestamps, sampleCount),
+                Arrays.copyOf(positions, sampleCount * 3), Arrays.copyOf(velocities, sampleCount * 3), directionOrigins);
+    }
+
+    /**
+     * @return the position and velocity recorded for the sequence number of a move event, or null if there is none.
+     */
+    private static float[] getState(Map<Long, float[]> states, JsonObject eventData) {
+        JsonElement sequenceNumber = eventData == null ? null : eventData.get(SEQUENCE_NUMBER);
+        if (sequenceNumber == null || !sequenceNumber.isJsonPrimitive()) {
+            return null;
+        }
+        return states.get(sequenceNumber.getAsLong());
+    }
+
+    /**
+     * Reads the map from the sequence number of each move event to the player's position and velocity after it.
+     * @return the position and velocity of each sequence number, as six floats.
+     */
+    private static Map<Long, float[]> readStatePositions(Path path) throws IOException {
+        Map<Long, float[]> states = new HashMap<>();
+        if (!Files.exists(path)) {
+            return states;
+        }
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                long sequenceNumber = Long.parseLong(reader.nextName());
+                float[] state = new float[6];
+                reader.beginArray();
+                readVector(reader, state, 0);
+                readVector(reader, state, 3);
+                reader.endArray();
+                states.put(sequenceNumber, state);
+            }
+            reader.endObject();
+        }
+        return states;
+    }
+
+    /**
+     * Reads the list of recorders, each with a list of [direction, origin] pairs, into six floats per pair.
+     */
+    private static float[][] readDirectionOrigins(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new float[0][];
+        }
+        float[][] recorders = new float[0][];
+        try (Reader fileReader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(fileReader)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                float[] values = new float[0];
+                int count = 0;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (count + 6 > values.length) {
+                            values = Arrays.copyOf(values, Math.max(12, values.length * 2));
+                        }
+                        reader.beginArray();
+                        readVector(reader, values, count);
+                        readVector(reader, values, count + 3);
+                        reader.endArray();
+                        count += 6;
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+                recorders = Arrays.copyOf(recorders, recorders.length + 1);
+                recorders[recorders.length - 1] = Arrays.copyOf(values, count);
+            }
+            reader.endArray();
+        }
+        return recorders;
+    }
+
+    private static void readVector(JsonReader reader, float[] target, int offset) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "x":
+                    target[offset] = (float) reader.nextDouble();
+                    break;
+                case "y":
+                    target[offset + 1] = (float) reader.nextDouble();
+                    break;
+                case "z":
+                    target[offset + 2] = (float) reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * @return the amount of samples in the trajectory.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param sample a sample between 0 and {@link #size()}.
+     * @return the index of the move event of the sample, comparable to EventSystemReplayImpl.getLastRecordedEventIndex().
+     */
+    public int getEventIndex(int sample) {
+        return eventIndices[sample];
+    }
+
+    public long getTimestamp(int sample) {
+        return timestamps[sample];
+    }
+
+    public Vector3f getPosition(int sample) {
+        return new Vector3f(positions[sample * 3], positions[sample * 3 + 1], positions[sample * 3 + 2]);
+    }
+
+    public Vector3f getVelocity(int sample) {
+        return new Vector3f(velocities[sample * 3], velocities[sample * 3 + 1], velocities[sample * 3 + 2]);
+    }
+
+    /**
+     * @param timestamp a timestamp of the recording.
+     * @return the last sample at or before the timestamp, or -1 if the timestamp is before the first sample.
+     */
+    public int getSampleAt(long timestamp) {
+        int search = Arrays.binarySearch(timestamps, timestamp);
+        if (search < 0) {
+            return -search - 2;
+        }
+        while (search + 1 < size && timestamps[search + 1] == timestamp) {
+            search++;
+        }
+        return search;
+    }
+
+    /**
+     * @param timestamp a timestamp of the recording.
+     * @return the first sample at or after the timestamp, or {@link #size()} if the timestamp is after the last sample.
+     */
+    public int getFirstSampleFrom(long timestamp) {
+        int sample = getSampleAt(timestamp);
+        if (sample >= 0 && timestamps[sample] == timestamp) {
+            while (sample > 0 && timestamps[sample - 1] == timestamp) {
+                sample--;
+            }
+            return sample;
+        }
+        return sample + 1;
+    }
+
+    /**
+     * @param timestamp a timestamp of the recording.
+     * @return the position of the player at the timestamp, interpolated between the samples around it, or null if the
+     * trajectory is empty.
+     */
+    public Vector3f getPositionAt(long timestamp) {
+        if (size == 0) {
+            return null;
+        }
+        int before = getSampleAt(timestamp);
+        if (before < 0) {
+            return getPosition(0);
+        }
+        if (before == size - 1 || timestamps[before] == timestamp) {
+            return getPosition(before);
+        }
+        int after = before + 1;
+        float t = (float) (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+        return new Vector3f(
+                positions[before * 3] + t * (positions[after * 3] - positions[before * 3]),
+                positions[before * 3 + 1] + t * (positions[after * 3 + 1] - positions[before * 3 + 1]),
+                positions[before * 3 + 2] + t * (positions[after * 3 + 2] - positions[before * 3 + 2]));
+    }
+
+    /**
+     * @param point a point of the world.
+     * @param radius the maximum distance from the point.
+     * @return the first sample in which the player is within the radius of the point, or -1 if that never happens.
+     */
+    public int getFirstSampleWithin(Vector3f point, float radius) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        int first = searchFirstWithin(0, 0, size, point.x, point.y, point.z, radius * radius, size);
+        return first == size ? -1 : first;
+    }
+
+    /**
+     * @param block the position of a block.
+     * @param radius the maximum distance from the center of the block.
+     * @return the index of the first move event after which the player is within the radius of the block, or -1 if
+     * that never happens.
+     */
+    public int getFirstEventIndexWithin(Vector3i block, float radius) {
+        int sample = getFirstSampleWithin(new Vector3f(block.x, block.y, block.z), radius);
+        return sample < 0 ? -1 : eventIndices[sample];
+    }
+
+    /**
+     * @param recorder {@link #ATTACK} or {@link #ACTIVATE}.
+     * @return how many directions and origins were recorded by the recorder.
+     */
+    public int getDirectionOriginCount(int recorder) {
+        return recorder < directionOrigins.length ? directionOrigins[recorder].length / 6 : 0;
+    }
+
+    /**
+     * @param recorder {@link #ATTACK} or {@link #ACTIVATE}.
+     * @param entry the number of the entry of the recorder.
+     * @return the direction the player was looking at.
+     */
+    public Vector3f getDirection(int recorder, int entry) {
+        float[] values = directionOrigins[recorder];
+        return new Vector3f(values[entry * 6], values[entry * 6 + 1], values[entry * 6 + 2]);
+    }
+
+    /**
+     * @param recorder {@link #ATTACK} or {@link #ACTIVATE}.
+     * @param entry the number of the entry of the recorder.
+     * @return the origin of the player's view.
+     */
+    public Vector3f getOrigin(int recorder, int entry) {
+        float[] values = directionOrigins[recorder];
+        return new Vector3f(values[entry * 6 + 3], values[entry * 6 + 4], values[entry * 6 + 5]);
+    }
+
+    /**
+     * Builds the k-d tree over the samples. The tree is implicit: node n covers the range of treeSamples given by its
+     * parent's split, its children are 2n + 1 and 2n + 2, and leaves hold up to {@link #LEAF_SIZE} samples.
+     */
+    private void buildTree() {
+        treeSamples = new int[size];
+        for (int i = 0; i < size; i++) {
+            treeSamples[i] = i;
+        }
+        int capacity = 1;
+        while (capacity * LEAF_SIZE < size) {
+            capacity *= 2;
+        }
+        nodeFirstSample = new int[capacity * 2];
+        nodeBounds = new float[capacity * 2 * 6];
+        nodeCount = size == 0 ? 0 : capacity * 2 - 1;
+        if (size > 0) {
+            buildNode(0, 0, size, 0);
+        }
+    }
+
+    private void buildNode(int node, int from, int to, int axis) {
+        float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        int firstSample = Integer.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            int sample = treeSamples[i];
+            firstSample = Math.min(firstSample, sample);
+            for (int a = 0; a < 3; a++) {
+                bounds[a] = Math.min(bounds[a], positions[sample * 3 + a]);
+                bounds[a + 3] = Math.max(bounds[a + 3], positions[sample * 3 + a]);
+            }
+        }
+        nodeFirstSample[node] = firstSample;
+        System.arraycopy(bounds, 0, nodeBounds, node * 6, 6);
+        if (to - from <= LEAF_SIZE || node * 2 + 2 >= nodeFirstSample.length) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        selectByAxis(from, to - 1, middle, axis);
+        buildNode(node * 2 + 1, from, middle, (axis + 1) % 3);
+        buildNode(node * 2 + 2, middle, to, (axis + 1) % 3);
+    }
+
+    /**
+     * Partially sorts treeSamples[left..right] so the sample at k is the one that would be there if sorted by the axis.
+     */
+    private void selectByAxis(int left, int right, int k, int axis) {
+        while (left < right) {
+            float pivot = positions[treeSamples[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (positions[treeSamples[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (positions[treeSamples[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = treeSamples[i];
+                    treeSamples[i] = treeSamples[j];
+                    treeSamples[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int searchFirstWithin(int node, int from, int to, float x, float y, float z, float radiusSquared, int best) {
+        if (nodeFirstSample[node] >= best || distanceSquaredToBounds(node, x, y, z) > radiusSquared) {
+            return best;
+        }
+        if (to - from <= LEAF_SIZE || node * 2 + 2 >= nodeFirstSample.length) {
+            for (int i = from; i < to; i++) {
+                int sample = treeSamples[i];
+                if (sample < best && distanceSquared(sample, x, y, z) <= radiusSquared) {
+                    best = sample;
+                }
+            }
+            return best;
+        }
+        int middle = (from + to) >>> 1;
+        int left = node * 2 + 1;
+        int right = node * 2 + 2;
+        if (nodeFirstSample[left] <= nodeFirstSample[right]) {
+            best = searchFirstWithin(left, from, middle, x, y, z, radiusSquared, best);
+            return searchFirstWithin(right, middle, to, x, y, z, radiusSquared, best);
+        }
+        best = searchFirstWithin(right, middle, to, x, y, z, radiusSquared, best);
+        return searchFirstWithin(left, from, middle, x, y, z, radiusSquared, best);
+    }
+
+    private float distanceSquared(int sample, float x, float y, float z) {
+        float dx = positions[sample * 3] - x;
+        float dy = positions[sample * 3 + 1] - y;
+        float dz = positions[sample * 3 + 2] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private float distanceSquaredToBounds(int node, float x, float y, float z) {
+        int offset = node * 6;
+        float dx = Math.max(0, Math.max(nodeBounds[offset] - x, x - nodeBounds[offset + 3]));
+        float dy = Math.max(0, Math.max(nodeBounds[offset + 1] - y, y - nodeBounds[offset + 4]));
+        float dz = Math.max(0, Math.max(nodeBounds[offset + 2] - z, z - nodeBounds[offset + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
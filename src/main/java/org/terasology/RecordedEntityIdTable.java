@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.terasology.entitySystem.entity.EntityRef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * A table that maps every entity ID referenced by the events of a recording to a live {@link EntityRef} during replay.
+ * <p>
+ * This is a lookup table for the tests: the replay itself still dispatches the recorded events by their own IDs, and
+ * tests use the table to find the live entities those events were sent to or targeted.
+ * <p>
+ * When a recording is loaded, the IDs found in the "entityRef_ID" of each event and in each of its entity-valued fields
+ * ("target", "OldTarget" and "NewTarget") are interned into a dense, sorted array, and each event stores one slot per
+ * field. After the replay starts, {@link #resolve(LongFunction, Supplier)}
+ * fills the slots with live entities, so getting the entity of an event is just array indexing. The "client" ID of
+ * "ref_id_map.json" is remapped to the client entity of the replay, since it differs between the recording and the replay.
+ * <p>
+ * Entities that do not exist yet when the replay starts, such as the ones created by the recorded events, are resolved
+ * on the first access after they are created. An entity that could not be resolved is not looked up again until the
+ * table is refreshed with {@link #refresh()}, which the game thread does once per tick, so entities that are never
+ * created do not cost an entity manager lookup on every access.
+ * <p>
+ * The slots are safe to read and resolve from the game thread and the test thread at the same time.
+ */
+public class RecordedEntityIdTable {
+
+    /** The slot of a target field that is missing or 0 in an event. */
+    public static final int NO_SLOT = -1;
+
+    /** The entity-valued field of input events. */
+    public static final String TARGET = "target";
+    /** The entity-valued fields of CameraTargetChangedEvent. */
+    public static final String OLD_TARGET = "OldTarget";
+    public static final String NEW_TARGET = "NewTarget";
+
+    private static final String CLIENT = "client";
+    private static final String[] TARGET_FIELDS = {TARGET, OLD_TARGET, NEW_TARGET};
+
+    private final long[] ids;
+    private final int[] entitySlots;
+    /** The slots of the target fields of event i are at i * TARGET_FIELDS.length, in the order of TARGET_FIELDS. */
+    private final int[] targetSlots;
+    private final long clientId;
+    private final AtomicReferenceArray<EntityRef> entities;
+    private final AtomicIntegerArray missedGenerations;
+    private volatile LongFunction<EntityRef> resolver;
+    private volatile Supplier<EntityRef> clientResolver;
+    private volatile int generation = 1;
+
+    private RecordedEntityIdTable(long[] ids, int[] entitySlots, int[] targetSlots, long clientId) {
+        this.ids = ids;
+        this.entitySlots = entitySlots;
+        this.targetSlots = targetSlots;
+        this.clientId = clientId;
+        this.entities = new AtomicReferenceArray<>(ids.length);
+        this.missedGenerations = new AtomicIntegerArray(ids.length);
+    }
+
+    /**
+     * Reads the events and the "ref_id_map.json" of a recording and interns all entity IDs referenced by them.
+     * @param recordingPath the folder of the recording.
+     * @return the table of the recording, not resolved yet.
+     * @throws IOException
+     */
+    public static RecordedEntityIdTable load(Path recordingPath) throws IOException {
+        long clientId = readClientId(recordingPath.resolve(RecordingFiles.REF_ID_MAP));
+        LongList rawEntityIds = new LongList();
+        LongList rawTargetIds = new LongList();
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            while (reader.next()) {
+                rawEntityIds.add(reader.getEntityId());
+                for (String field : TARGET_FIELDS) {
+                    rawTargetIds.add(readEntityId(reader.getEventData(), field));
+                }
+            }
+        }
+
+        LongList allIds = new LongList();
+        allIds.addAll(rawEntityIds);
+        for (int i = 0; i < rawTargetIds.size(); i++) {
+            if (rawTargetIds.get(i) != 0) {
+                allIds.add(rawTargetIds.get(i));
+            }
+        }
+        if (clientId != 0) {
+            allIds.add(clientId);
+        }
+        long[] ids = allIds.toSortedDistinctArray();
+
+        int[] entitySlots = new int[rawEntityIds.size()];
+        int[] targetSlots = new int[rawTargetIds.size()];
+        for (int i = 0; i < entitySlots.length; i++) {
+            entitySlots[i] = Arrays.binarySearch(ids, rawEntityIds.get(i));
+        }
+        for (int i = 0; i < targetSlots.length; i++) {
+            long targetId = rawTargetIds.get(i);
+            targetSlots[i] = targetId == 0 ? NO_SLOT : Arrays.binarySearch(ids, targetId);
+        }
+        return new RecordedEntityIdTable(ids, entitySlots, targetSlots, clientId);
+    }
+
+    private static long readClientId(Path refIdMapPath) throws IOException {
+        if (!Files.exists(refIdMapPath)) {
+            return 0;
+        }
+        try (Reader reader = Files.newBufferedReader(refIdMapPath, StandardCharsets.UTF_8)) {
+            JsonObject refIdMap = new JsonParser().parse(reader).getAsJsonObject();
+            return refIdMap.has(CLIENT) ? refIdMap.get(CLIENT).getAsLong() : 0;
+        }
+    }
+
+    /**
+     * @return the entity ID in the given field of the event data, or 0 if the field is missing.
+     */
+    private static long readEntityId(JsonObject eventData, String field) {
+        if (eventData == null) {
+            return 0;
+        }
+        JsonElement target = eventData.get(field);
+        return target != null && target.isJsonPrimitive() ? target.getAsLong() : 0;
+    }
+
+    private static int fieldIndex(String field) {
+        for (int i = 0; i < TARGET_FIELDS.length; i++) {
+            if (TARGET_FIELDS[i].equals(field)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not an entity-valued field: " + field);
+    }
+
+    /**
+     * Resolves all recorded entity IDs to live entities. This should be called once the replay is REPLAYING.
+     * @param entityResolver gets the live entity of a recorded ID, such as {@code entityManager::getEntity}.
+     * @param clientEntity gets the client entity of the replay, which replaces the recorded "client" ID.
+     */
+    public void resolve(LongFunction<EntityRef> entityResolver, Supplier<EntityRef> clientEntity) {
+        setResolvers(entityResolver, clientEntity);
+        for (int slot = 0; slot < ids.length; slot++) {
+            getBySlot(slot);
+        }
+    }
+
+    /**
+     * Sets how recorded entity IDs are resolved, without resolving them yet. Each slot is resolved on its first access.
+     * @param entityResolver gets the live entity of a recorded ID, such as {@code entityManager::getEntity}.
+     * @param clientEntity gets the client entity of the replay, which replaces the recorded "client" ID.
+     */
+    public void setResolvers(LongFunction<EntityRef> entityResolver, Supplier<EntityRef> clientEntity) {
+        this.clientResolver = clientEntity;
+        this.resolver = entityResolver;
+        generation++;
+    }
+
+    /**
+     * Allows the entities that could not be resolved so far to be looked up again. Should be called by the game thread
+     * once per tick.
+     */
+    public void refresh() {
+        generation++;
+    }
+
+    private EntityRef resolveSlot(int slot, LongFunction<EntityRef> entityResolver) {
+        return ids[slot] == clientId ? clientResolver.get() : entityResolver.apply(ids[slot]);
+    }
+
+    /**
+     * @param eventIndex the index of the event in the recording.
+     * @return the live entity the event was sent to.
+     */
+    public EntityRef getEntity(int eventIndex) {
+        return getBySlot(entitySlots[eventIndex]);
+    }
+
+    /**
+     * @param eventIndex the index of the event in the recording.
+     * @param field one of {@link #TARGET}, {@link #OLD_TARGET} and {@link #NEW_TARGET}.
+     * @return the live entity in the field of the event, or {@link EntityRef#NULL} if the event does not have it.
+     */
+    public EntityRef getTarget(int eventIndex, String field) {
+        return getBySlot(getTargetSlot(eventIndex, field));
+    }
+
+    /**
+     * @param recordedId an entity ID as it is in the recording.
+     * @return the live entity of the recorded ID, or {@link EntityRef#NULL} if the recording never references it.
+     */
+    public EntityRef get(long recordedId) {
+        int slot = Arrays.binarySearch(ids, recordedId);
+        return slot < 0 ? EntityRef.NULL : getBySlot(slot);
+    }
+
+    private EntityRef getBySlot(int slot) {
+        if (slot == NO_SLOT) {
+            return EntityRef.NULL;
+        }
+        EntityRef entity = entities.get(slot);
+        if (entity != null && entity.exists()) {
+            return entity;
+        }
+        LongFunction<EntityRef> entityResolver = resolver;
+        int currentGeneration = generation;
+        if (entityResolver == null || missedGenerations.get(slot) == currentGeneration) {
+            return EntityRef.NULL;
+        }
+        entity = resolveSlot(slot, entityResolver);
+        if (entity != null && entity.exists()) {
+            entities.set(slot, entity);
+            return entity;
+        }
+        entities.set(slot, null);
+        missedGenerations.set(slot, currentGeneration);
+        return EntityRef.NULL;
+    }
+
+    /**
+     * @param eventIndex the index of the event in the recording.
+     * @return the slot of the entity the event was sent to.
+     */
+    public int getEntitySlot(int eventIndex) {
+        return entitySlots[eventIndex];
+    }
+
+    /**
+     * @param eventIndex the index of the event in the recording.
+     * @param field one of {@link #TARGET}, {@link #OLD_TARGET} and {@link #NEW_TARGET}.
+     * @return the slot of the entity in the field of the event, or {@link #NO_SLOT}.
+     */
+    public int getTargetSlot(int eventIndex, String field) {
+        return targetSlots[eventIndex * TARGET_FIELDS.length + fieldIndex(field)];
+    }
+
+    /**
+     * @param slot a slot of this table.
+     * @return the recorded entity ID stored in the slot.
+     */
+    public long getRecordedId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * @return the amount of distinct entity IDs referenced by the recording.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    public int getEventCount() {
+        return entitySlots.length;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    /**
+     * A minimal growable list of primitive longs, so interning does not box every ID of the recording.
+     */
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toSortedDistinctArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.SimpleUri;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.event.Event;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+/**
+ * Decodes the entries of a recording into engine events outside of the replay system, for tools that send recorded
+ * events by themselves, such as the load test of {@link ReplayTestingEnvironment}.
+ * <p>
+ * Events are decoded by reflection on their fields, so only the fields stored with plain values are restored: entity
+ * IDs are resolved to live entities, URIs are parsed and fields of interface or abstract types, such as the input of a
+ * key event or the sound of a sound event, are left null. Events whose class cannot be loaded or decoded are skipped.
+ */
+public class RecordedEventDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordedEventDecoder.class);
+
+    /** Field names that the recording serializer stores with a different name. */
+    private static final Map<String, String> RECORDED_FIELD_NAMES = ImmutableMap.of(
+            "sequenceNumber", "sequeceNumber",
+            "oldTarget", "OldTarget",
+            "newTarget", "NewTarget");
+
+    private final Gson gson;
+    private final Map<String, Class<? extends Event>> eventClasses = Maps.newHashMap();
+    private final Set<String> undecodableClasses = Sets.newHashSet();
+    private int failedCount;
+
+    /**
+     * @param entityResolver gets the live entity of a recorded entity ID.
+     */
+    public RecordedEventDecoder(LongFunction<EntityRef> entityResolver) {
+        gson = new GsonBuilder()
+                .registerTypeAdapter(EntityRef.class, new EntityRefAdapter(entityResolver))
+                .registerTypeAdapter(SimpleUri.class, new SimpleUriAdapter())
+                .setFieldNamingStrategy(field -> RECORDED_FIELD_NAMES.getOrDefault(field.getName(), field.getName()))
+                .setExclusionStrategies(new UndecodableFieldStrategy())
+                .create();
+    }
+
+    /**
+     * @param entry an event of a recording.
+     * @return the decoded event, or null if the event cannot be decoded.
+     */
+    public Event decode(RecordedEventEntry entry) {
+        Class<? extends Event> eventClass = getEventClass(entry.getEventClass());
+        if (eventClass == null) {
+            failedCount++;
+            return null;
+        }
+        try {
+            JsonObject eventData = entry.getEventData() == null ? new JsonObject() : entry.getEventData();
+            return gson.fromJson(eventData, eventClass);
+        } catch (JsonParseException | IllegalStateException e) {
+            if (undecodableClasses.add(entry.getEventClass())) {
+                logger.warn("Could not decode recorded events of class {}", entry.getEventClass(), e);
+            }
+            failedCount++;
+            return null;
+        }
+    }
+
+    /**
+     * @return the loaded class of the event, or null if it is not an event class that can be loaded.
+     */
+    private Class<? extends Event> getEventClass(String className) {
+        Class<? extends Event> eventClass = eventClasses.get(className);
+        if (eventClass != null || undecodableClasses.contains(className)) {
+            return eventClass;
+        }
+        try {
+            Class<?> loadedClass = Class.forName(className);
+            if (Event.class.isAssignableFrom(loadedClass)) {
+                eventClass = loadedClass.asSubclass(Event.class);
+                eventClasses.put(className, eventClass);
+                return eventClass;
+            }
+        } catch (ClassNotFoundException e) {
+            logger.debug("Recorded event class {} not found", className);
+        }
+        undecodableClasses.add(className);
+        return null;
+    }
+
+    /**
+     * @return how many events could not be decoded.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    private static class EntityRefAdapter extends TypeAdapter<EntityRef> {
+        private final LongFunction<EntityRef> entityResolver;
+
+        EntityRefAdapter(LongFunction<EntityRef> entityResolver) {
+            this.entityResolver = entityResolver;
+        }
+
+        @Override
+        public void write(JsonWriter out, EntityRef entity) throws IOException {
+            out.value(entity.getId());
+        }
+
+        @Override
+        public EntityRef read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return EntityRef.NULL;
+            }
+            long id = in.nextLong();
+            return id == 0 ? EntityRef.NULL : entityResolver.apply(id);
+        }
+    }
+
+    private static class SimpleUriAdapter extends TypeAdapter<SimpleUri> {
+        @Override
+        public void write(JsonWriter out, SimpleUri uri) throws IOException {
+            out.value(uri.toString());
+        }
+
+        @Override
+        public SimpleUri read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return new SimpleUri(in.nextString());
+        }
+    }
+
+    /**
+     * Skips fields that cannot be created by reflection: interfaces and abstract classes, except entities.
+     */
+    private static class UndecodableFieldStrategy implements ExclusionStrategy {
+        @Override
+        public boolean shouldSkipField(FieldAttributes field) {
+            Class<?> type = field.getDeclaredClass();
+            if (type.isPrimitive() || type.isArray() || type.isEnum() || type == EntityRef.class) {
+                return false;
+            }
+            return type.isInterface() || Modifier.isAbstract(type.getModifiers());
+        }
+
+        @Override
+        public boolean shouldSkipClass(Class<?> type) {
+            return false;
+        }
+    }
+}
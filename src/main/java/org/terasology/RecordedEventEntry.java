@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A single event of a recording, as it is stored in the event files: not yet decoded into an engine event.
+ */
+public class RecordedEventEntry {
+
+    private final long entityId;
+    private final long timestamp;
+    private final long index;
+    private final String eventClass;
+    private final JsonObject eventData;
+
+    public RecordedEventEntry(long entityId, long timestamp, long index, String eventClass, JsonObject eventData) {
+        this.entityId = entityId;
+        this.timestamp = timestamp;
+        this.index = index;
+        this.eventClass = eventClass;
+        this.eventData = eventData;
+    }
+
+    /**
+     * @param reader a reader positioned on an event.
+     * @return the current event of the reader.
+     */
+    public static RecordedEventEntry of(RecordedEventReader reader) {
+        return new RecordedEventEntry(reader.getEntityId(), reader.getTimestamp(), reader.getIndex(),
+                reader.getEventClass(), reader.getEventData());
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public String getEventClass() {
+        return eventClass;
+    }
+
+    public JsonObject getEventData() {
+        return eventData;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams the events of a recording one at a time, going through all of its event files in order. Only the current
+ * event is kept in memory, so recordings with many events can be read without loading whole files. Example:
+ * <pre>   {@code
+ * try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+ *     while (reader.next()) {
+ *         long timestamp = reader.getTimestamp();
+ *     }
+ * }
+ * }</pre>
+ */
+public class RecordedEventReader implements Closeable {
+
+    private static final String EVENTS = "events";
+    private static final String ENTITY_ID = "entityRef_ID";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String INDEX = "index";
+    private static final String EVENT_CLASS = "event_class";
+    private static final String EVENT_DATA = "event_data";
+
+    private final Iterator<Path> eventFiles;
+    private final JsonParser parser = new JsonParser();
+    private JsonReader reader;
+
+    private long entityId;
+    private long timestamp;
+    private long index;
+    private String eventClass;
+    private JsonObject eventData;
+
+    public RecordedEventReader(List<Path> eventFiles) {
+        this.eventFiles = eventFiles.iterator();
+    }
+
+    /**
+     * @param recordingPath the folder of the recording.
+     * @return a reader over all event files of the recording.
+     * @throws IOException
+     */
+    public static RecordedEventReader open(Path recordingPath) throws IOException {
+        return new RecordedEventReader(RecordingFiles.getEventFiles(recordingPath));
+    }
+
+    /**
+     * Moves to the next event.
+     * @return false if there are no more events.
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        while (reader == null || !reader.hasNext()) {
+            if (reader != null) {
+                reader.endArray();
+                reader.close();
+                reader = null;
+            }
+            if (!eventFiles.hasNext()) {
+                return false;
+            }
+            openEventFile(eventFiles.next());
+        }
+        readEvent();
+        return true;
+    }
+
+    private void openEventFile(Path eventFile) throws IOException {
+        reader = new JsonReader(Files.newBufferedReader(eventFile, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (!EVENTS.equals(reader.nextName())) {
+            reader.skipValue();
+        }
+        reader.beginArray();
+    }
+
+    private void readEvent() throws IOException {
+        entityId = 0;
+        timestamp = 0;
+        index = 0;
+        eventClass = null;
+        eventData = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case ENTITY_ID:
+                    entityId = reader.nextLong();
+                    break;
+                case TIMESTAMP:
+                    timestamp = reader.nextLong();
+                    break;
+                case INDEX:
+                    index = reader.nextLong();
+                    break;
+                case EVENT_CLASS:
+                    eventClass = reader.nextString();
+                    break;
+                case EVENT_DATA:
+                    eventData = parser.parse(reader).getAsJsonObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public String getEventClass() {
+        return eventClass;
+    }
+
+    public JsonObject getEventData() {
+        return eventData;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
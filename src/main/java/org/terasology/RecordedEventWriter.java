@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the events of a recording incrementally, in the same format read by {@link RecordedEventReader}.
+ * <p>
+ * Appended events are handed to a background thread through a bounded queue, so the thread that records does not wait
+ * for serialization or disk writes unless the queue is full. The background thread streams the events to numbered event
+ * files ("events1.json", "events2.json", ...) and starts a new file once the current one reaches the maximum segment
+ * size, so neither the memory used nor the size of each file depends on the length of the recording. The
+ * "file_amount.json" is written as 0 when the writer is created and updated every time a segment is completed, so if the
+ * game crashes the recording stays readable up to its last completed segment, and a crash before the first segment is
+ * completed leaves a recording without events. Null members of the event data are written as JSON nulls. Example:
+ * <pre>   {@code
+ * try (RecordedEventWriter writer = new RecordedEventWriter(recordingPath)) {
+ *     writer.append(entityId, timestamp, eventClass, eventData);
+ * }
+ * }</pre>
+ */
+public class RecordedEventWriter implements Closeable {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordedEventWriter.class);
+
+    /** How long the background thread waits for new events before flushing what it has written. */
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final PendingEvent END_OF_RECORDING = new PendingEvent(0, 0, 0, null, null);
+
+    private final Path recordingPath;
+    private final long maxSegmentBytes;
+    private final BlockingQueue<PendingEvent> queue;
+    private final Thread writerThread;
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    private long nextIndex;
+    private volatile IOException writeError;
+    private boolean isClosed;
+
+    /* Only accessed by the background thread until it finishes. */
+    private int segmentCount;
+    private CountingOutputStream segmentBytes;
+    private JsonWriter segmentWriter;
+
+    public RecordedEventWriter(Path recordingPath) throws IOException {
+        this(recordingPath, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param recordingPath the folder of the recording, created if it does not exist.
+     * @param maxSegmentBytes the size after which a new event file is started.
+     * @param queueCapacity the maximum amount of events waiting to be written.
+     * @throws IOException
+     */
+    public RecordedEventWriter(Path recordingPath, long maxSegmentBytes, int queueCapacity) throws IOException {
+        this.recordingPath = recordingPath;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(recordingPath);
+        writeFileAmount(0);
+        writerThread = new Thread(this::writeEvents, "RecordedEventWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues an event to be written. The index of the event is the amount of events appended before it.
+     * @param entityId the ID of the entity the event was sent to.
+     * @param timestamp the time in which the event was sent.
+     * @param eventClass the full name of the class of the event.
+     * @param eventData the serialized fields of the event.
+     * @throws IOException if a previous write has failed.
+     * @throws InterruptedException if interrupted while waiting for space in a full queue.
+     */
+    public void append(long entityId, long timestamp, String eventClass, JsonObject eventData) throws IOException, InterruptedException {
+        checkWriteError();
+        if (isClosed) {
+            throw new IOException("The writer of " + recordingPath + " is closed");
+        }
+        PendingEvent event = new PendingEvent(entityId, timestamp, nextIndex++, eventClass, eventData);
+        while (!queue.offer(event, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            checkWriteError();
+        }
+    }
+
+    /**
+     * Writes all queued events, completes the last segment and waits for the background thread to finish.
+     * @throws IOException if any write has failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            while (writerThread.isAlive() && !queue.offer(END_OF_RECORDING, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                // waits for the background thread to make room in the queue.
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the writer of " + recordingPath, e);
+        }
+        checkWriteError();
+    }
+
+    /**
+     * @return the amount of event files written so far. Only accurate after {@link #close()}.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    private void checkWriteError() throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void writeEvents() {
+        try {
+            while (true) {
+                PendingEvent event = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    if (segmentWriter != null) {
+                        segmentWriter.flush();
+                    }
+                } else if (event == END_OF_RECORDING) {
+                    break;
+                } else {
+                    writeEvent(event);
+                }
+            }
+            if (segmentWriter == null && segmentCount == 0) {
+                startSegment(); // a recording without events still needs its first event file.
+            }
+            if (segmentWriter != null) {
+                completeSegment();
+            }
+        } catch (IOException e) {
+            logger.error("Error writing the events of {}", recordingPath, e);
+            writeError = e;
+            queue.clear();
+        } catch (InterruptedException e) {
+            writeError = new IOException("The writer of " + recordingPath + " was interrupted", e);
+        }
+    }
+
+    private void writeEvent(PendingEvent event) throws IOException {
+        if (segmentWriter == null) {
+            startSegment();
+        }
+        segmentWriter.beginObject();
+        segmentWriter.name("entityRef_ID").value(event.entityId);
+        segmentWriter.name("timestamp").value(event.timestamp);
+        segmentWriter.name("index").value(event.index);
+        segmentWriter.name("event_class").value(event.eventClass);
+        segmentWriter.name("event_data");
+        gson.toJson(event.eventData == null ? new JsonObject() : event.eventData, segmentWriter);
+        segmentWriter.endObject();
+        if (segmentBytes.getCount() >= maxSegmentBytes) {
+            completeSegment();
+        }
+    }
+
+    private void startSegment() throws IOException {
+        Path segmentPath = RecordingFiles.getEventFile(recordingPath, segmentCount + 1);
+        segmentBytes = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(segmentPath)));
+        segmentWriter = new JsonWriter(new OutputStreamWriter(segmentBytes, StandardCharsets.UTF_8));
+        segmentWriter.beginObject();
+        segmentWriter.name("events");
+        segmentWriter.beginArray();
+    }
+
+    private void completeSegment() throws IOException {
+        segmentWriter.endArray();
+        segmentWriter.endObject();
+        segmentWriter.close();
+        segmentWriter = null;
+        segmentBytes = null;
+        segmentCount++;
+        writeFileAmount(segmentCount);
+    }
+
+    private void writeFileAmount(int fileAmount) throws IOException {
+        byte[] content = String.valueOf(fileAmount).getBytes(StandardCharsets.UTF_8);
+        Files.write(recordingPath.resolve(RecordingFiles.FILE_AMOUNT), content);
+    }
+
+    private static final class PendingEvent {
+        private final long entityId;
+        private final long timestamp;
+        private final long index;
+        private final String eventClass;
+        private final JsonObject eventData;
+
+        private PendingEvent(long entityId, long timestamp, long index, String eventClass, JsonObject eventData) {
+            this.entityId = entityId;
+            this.timestamp = timestamp;
+            this.index = index;
+            this.eventClass = eventClass;
+            this.eventData = eventData;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Names and helpers for the files that make up a recording folder, such as the ones inside "assets/recordings".
+ * <p>
+ * The events of a recording are split in numbered files ("events1.json", "events2.json", ...) and the amount of those
+ * files is stored in "file_amount.json".
+ */
+public final class RecordingFiles {
+
+    public static final String EVENT_FILE_PREFIX = "events";
+    public static final String EVENT_FILE_EXTENSION = ".json";
+    public static final String FILE_AMOUNT = "file_amount.json";
+    public static final String REF_ID_MAP = "ref_id_map.json";
+    public static final String STATE_EVENT_POSITION = "state_event_position.json";
+    public static final String DIRECTION_ORIGIN_LIST = "direction_origin_list.json";
+
+    private RecordingFiles() {
+    }
+
+    /**
+     * @param recordingPath the folder of the recording.
+     * @return the amount of event files of the recording, or 1 if "file_amount.json" does not exist.
+     * @throws IOException
+     */
+    public static int readFileAmount(Path recordingPath) throws IOException {
+        Path fileAmountPath = recordingPath.resolve(FILE_AMOUNT);
+        if (!Files.exists(fileAmountPath)) {
+            return 1;
+        }
+        String content = new String(Files.readAllBytes(fileAmountPath), StandardCharsets.UTF_8).trim();
+        return Integer.parseInt(content);
+    }
+
+    /**
+     * @param recordingPath the folder of the recording.
+     * @param number the number of the event file, starting at 1.
+     * @return the path of the event file.
+     */
+    public static Path getEventFile(Path recordingPath, int number) {
+        return recordingPath.resolve(EVENT_FILE_PREFIX + number + EVENT_FILE_EXTENSION);
+    }
+
+    /**
+     * @param recordingPath the folder of the recording.
+     * @return the paths of all event files of the recording, in replay order.
+     * @throws IOException
+     */
+    public static List<Path> getEventFiles(Path recordingPath) throws IOException {
+        int fileAmount = readFileAmount(recordingPath);
+        List<Path> eventFiles = Lists.newArrayListWithCapacity(fileAmount);
+        for (int i = 1; i <= fileAmount; i++) {
+            eventFiles.add(getEventFile(recordingPath, i));
+        }
+        return eventFiles;
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.world.chunks.ChunkConstants;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Derives stress variants from an existing recording, to see how the engine's event and world systems scale under
+ * heavier input than a human recording produces. A variant is a new recording folder in the same layout as the ones
+ * in "assets/recordings", so it can be replayed headless by {@link ReplayTestingEnvironment} like any other recording,
+ * with {@link ReplayOptions} and {@link ReplayMetrics}. Variants are generated outside the source tree, by default in
+ * the recordings folder of {@link #DEFAULT_VARIANT_HOME_PATH}, which is passed to
+ * {@link ReplayTestingEnvironment#setHomePath(Path)} to replay them. The variant can:
+ * <ul>
+ *     <li>Multiply the density of MouseAxisEvents: each one is split into several events that together turn the camera
+ *     as much as the original did.</li>
+ *     <li>Repeat the block-break interactions, the attack button and mouse button events, after the end of the
+ *     recording. Each repetition is moved into another chunk of the saved world, and the recorded attack directions and
+ *     origins are repeated with it.</li>
+ *     <li>Jitter the timestamps of the events with a seeded random, keeping them in order.</li>
+ * </ul>
+ * CharacterMoveInputEvents are never added or removed, so the positions in "state_event_position.json" still match
+ * them. Example:
+ * <pre>   {@code
+ * new RecordingVariantGenerator()
+ *         .setMouseAxisFactor(4)
+ *         .setBlockBreakRepeats(3)
+ *         .setTimestampJitterMs(5)
+ *         .generate(DEFAULT_RECORDINGS_PATH.resolve("Woodcut"), DEFAULT_VARIANTS_PATH.resolve("WoodcutStress"),
+ *                 "WoodcutStress");
+ * }</pre>
+ * The same can be done from the command line with {@link #main(String[])}.
+ */
+public class RecordingVariantGenerator {
+
+    /** The folder of the recorded replays that variants are generated from. */
+    public static final Path DEFAULT_RECORDINGS_PATH = Paths.get("modules/TestReplayModule/assets/recordings");
+    /** The home path whose recordings folder holds the generated variants. */
+    public static final Path DEFAULT_VARIANT_HOME_PATH = Paths.get("modules/TestReplayModule/build/variantHome");
+    public static final Path DEFAULT_VARIANTS_PATH = DEFAULT_VARIANT_HOME_PATH.resolve("recordings");
+    public static final String MOUSE_AXIS_EVENT = "org.terasology.input.events.MouseAxisEvent";
+    public static final String MOUSE_BUTTON_EVENT = "org.terasology.input.events.MouseButtonEvent";
+    public static final String ATTACK_BUTTON = "org.terasology.input.binds.interaction.AttackButton";
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingVariantGenerator.class);
+    private static final String MANIFEST = "manifest.json";
+    private static final String WORLD_PATH = "worlds/main";
+    private static final String CHUNK_ZIP_PATTERN = "*.chunks.zip";
+    private static final String CHUNK_EXTENSION = ".chunk";
+    private static final String DIRECTION_AND_ORIGIN_DATA = "directionAndOriginData";
+    private static final long REPEAT_GAP_MS = 1000;
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private int mouseAxisFactor = 1;
+    private int blockBreakRepeats;
+    private int timestampJitterMs;
+    private long seed;
+
+    /**
+     * @param factor how many MouseAxisEvents replace each recorded one. 1 keeps them as they are.
+     * @return this generator.
+     */
+    public RecordingVariantGenerator setMouseAxisFactor(int factor) {
+        this.mouseAxisFactor = Math.max(1, factor);
+        return this;
+    }
+
+    /**
+     * @param repeats how many times the block-break interactions are repeated in other chunks. 0 does not repeat them.
+     * @return this generator.
+     */
+    public RecordingVariantGenerator setBlockBreakRepeats(int repeats) {
+        this.blockBreakRepeats = Math.max(0, repeats);
+        return this;
+    }
+
+    /**
+     * @param jitterMs the maximum amount of milliseconds each timestamp is moved. 0 keeps the recorded timestamps.
+     * @return this generator.
+     */
+    public RecordingVariantGenerator setTimestampJitterMs(int jitterMs) {
+        this.timestampJitterMs = Math.max(0, jitterMs);
+        return this;
+    }
+
+    /**
+     * @param seed the seed of the timestamp jitter, so the same variant can be generated again.
+     * @return this generator.
+     */
+    public RecordingVariantGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes a variant of a recording.
+     * @param sourcePath the folder of the recording.
+     * @param targetPath the folder of the variant, which must not exist yet. Its parent folders are created if needed.
+     * @param title the title of the variant, written to its manifest.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void generate(Path sourcePath, Path targetPath, String title) throws IOException, InterruptedException {
+        if (Files.exists(targetPath)) {
+            throw new IOException("The variant folder " + targetPath + " already exists");
+        }
+        Path parentPath = targetPath.toAbsolutePath().getParent();
+        if (parentPath != null) {
+            Files.createDirectories(parentPath);
+        }
+        copyRecording(sourcePath, targetPath, title);
+
+        List<RecordedEventEntry> recordedEvents = Lists.newArrayList();
+        try (RecordedEventReader reader = RecordedEventReader.open(sourcePath)) {
+            while (reader.next()) {
+                recordedEvents.add(RecordedEventEntry.of(reader));
+            }
+        }
+        JsonArray directionOriginList = readDirectionOriginList(sourcePath);
+
+        List<RecordedEventEntry> events = multiplyMouseAxisEvents(recordedEvents);
+        if (blockBreakRepeats > 0 && !recordedEvents.isEmpty()) {
+            repeatBlockBreaks(sourcePath, recordedEvents, directionOriginList, events);
+        }
+        jitterTimestamps(events);
+
+        try (RecordedEventWriter writer = new RecordedEventWriter(targetPath)) {
+            for (RecordedEventEntry event : events) {
+                writer.append(event.getEntityId(), event.getTimestamp(), event.getEventClass(), event.getEventData());
+            }
+        }
+        if (directionOriginList != null) {
+            Files.write(targetPath.resolve(RecordingFiles.DIRECTION_ORIGIN_LIST),
+                    directionOriginList.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        logger.info("Generated {} with {} events from the {} events of {}", title, events.size(), recordedEvents.size(),
+                sourcePath.getFileName());
+    }
+
+    /**
+     * Copies every file of the recording except the ones the variant rewrites, and sets the title of the manifest.
+     */
+    private void copyRecording(Path sourcePath, Path targetPath, String title) throws IOException {
+        try (Stream<Path> files = Files.walk(sourcePath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path relativePath = sourcePath.relativize(file);
+                String name = file.getFileName().toString();
+                if (relativePath.getNameCount() == 1 && (isEventFile(name) || name.equals(RecordingFiles.FILE_AMOUNT)
+                        || name.equals(RecordingFiles.DIRECTION_ORIGIN_LIST) || name.equals(MANIFEST))) {
+                    continue;
+                }
+                Files.copy(file, targetPath.resolve(relativePath.toString()));
+            }
+        }
+        Path manifestPath = sourcePath.resolve(MANIFEST);
+        if (Files.exists(manifestPath)) {
+            JsonObject manifest;
+            try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+                manifest = new JsonParser().parse(reader).getAsJsonObject();
+            }
+            manifest.addProperty("title", title);
+            try (Writer writer = Files.newBufferedWriter(targetPath.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+                gson.toJson(manifest, writer);
+            }
+        }
+    }
+
+    private static boolean isEventFile(String name) {
+        return name.startsWith(RecordingFiles.EVENT_FILE_PREFIX) && name.endsWith(RecordingFiles.EVENT_FILE_EXTENSION);
+    }
+
+    private JsonArray readDirectionOriginList(Path recordingPath) throws IOException {
+        Path listPath = recordingPath.resolve(RecordingFiles.DIRECTION_ORIGIN_LIST);
+        if (!Files.exists(listPath)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(listPath, StandardCharsets.UTF_8)) {
+            return new JsonParser().parse(reader).getAsJsonArray();
+        }
+    }
+
+    /**
+     * @return the events of the recording, with each MouseAxisEvent split into {@link #mouseAxisFactor} events whose
+     * values add up to the recorded value.
+     */
+    private List<RecordedEventEntry> multiplyMouseAxisEvents(List<RecordedEventEntry> recordedEvents) {
+        List<RecordedEventEntry> events = Lists.newArrayListWithCapacity(recordedEvents.size());
+        for (RecordedEventEntry event : recordedEvents) {
+            if (mouseAxisFactor == 1 || !MOUSE_AXIS_EVENT.equals(event.getEventClass()) || event.getEventData() == null
+                    || !event.getEventData().has("value")) {
+                events.add(event);
+                continue;
+            }
+            for (int i = 0; i < mouseAxisFactor; i++) {
+                JsonObject eventData = copy(event.getEventData());
+                eventData.addProperty("value", event.getEventData().get("value").getAsDouble() / mouseAxisFactor);
+                events.add(withData(event, event.getTimestamp(), eventData));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Appends {@link #blockBreakRepeats} repetitions of the block-break events after the end of the recording, each
+     * one moved into another chunk of the saved world, and repeats the recorded attack directions and origins with it.
+     */
+    private void repeatBlockBreaks(Path sourcePath, List<RecordedEventEntry> recordedEvents, JsonArray directionOriginList,
+                                   List<RecordedEventEntry> events) throws IOException {
+        List<RecordedEventEntry> blockBreaks = findBlockBreaks(recordedEvents);
+        if (blockBreaks.isEmpty()) {
+            logger.warn("{} has no block-break events to repeat", sourcePath.getFileName());
+            return;
+        }
+        JsonArray attacks = directionOriginList != null && directionOriginList.size() > PlayerTrajectory.ATTACK
+                ? directionOriginList.get(PlayerTrajectory.ATTACK).getAsJsonObject().getAsJsonArray(DIRECTION_AND_ORIGIN_DATA)
+                : null;
+        Vector3i origin = getVector(blockBreaks.get(0).getEventData(), "targetBlockPosition");
+        if (attacks != null && attacks.size() > 0) {
+            JsonObject attackOrigin = attacks.get(0).getAsJsonArray().get(1).getAsJsonObject();
+            origin = new Vector3i((int) Math.floor(attackOrigin.get("x").getAsDouble()),
+                    (int) Math.floor(attackOrigin.get("y").getAsDouble()), (int) Math.floor(attackOrigin.get("z").getAsDouble()));
+        }
+        if (origin == null) {
+            logger.warn("{} has no block positions to repeat the block-break events from", sourcePath.getFileName());
+            return;
+        }
+        List<Vector3i> offsets = findChunkOffsets(sourcePath.resolve(WORLD_PATH), origin);
+        if (offsets.isEmpty()) {
+            logger.warn("{} has no other chunks to repeat the block-break events in", sourcePath.getFileName());
+            return;
+        }
+
+        JsonArray recordedAttacks = attacks == null ? new JsonArray() : copy(attacks);
+        long firstTimestamp = blockBreaks.get(0).getTimestamp();
+        long span = recordedEvents.get(recordedEvents.size() - 1).getTimestamp() - firstTimestamp + REPEAT_GAP_MS;
+        for (int repeat = 1; repeat <= blockBreakRepeats; repeat++) {
+            Vector3i offset = offsets.get((repeat - 1) % offsets.size());
+            for (RecordedEventEntry event : blockBreaks) {
+                JsonObject eventData = copy(event.getEventData());
+                shift(eventData, "targetBlockPosition", offset);
+                shift(eventData, "hitPosition", offset);
+                events.add(withData(event, event.getTimestamp() + repeat * span, eventData));
+            }
+            for (JsonElement attack : recordedAttacks) {
+                JsonArray directionAndOrigin = copy(attack.getAsJsonArray());
+                JsonObject attackOrigin = directionAndOrigin.get(1).getAsJsonObject();
+                shift(attackOrigin, offset);
+                attacks.add(directionAndOrigin);
+            }
+        }
+    }
+
+    /**
+     * @return the attack button events and the mouse button events sent in the same frame as them.
+     */
+    private static List<RecordedEventEntry> findBlockBreaks(List<RecordedEventEntry> recordedEvents) {
+        List<RecordedEventEntry> blockBreaks = Lists.newArrayList();
+        for (int i = 0; i < recordedEvents.size(); i++) {
+            RecordedEventEntry event = recordedEvents.get(i);
+            if (event.getEventData() == null) {
+                continue;
+            }
+            if (ATTACK_BUTTON.equals(event.getEventClass())
+                    || MOUSE_BUTTON_EVENT.equals(event.getEventClass()) && hasAttackInFrame(recordedEvents, i)) {
+                blockBreaks.add(event);
+            }
+        }
+        return blockBreaks;
+    }
+
+    private static boolean hasAttackInFrame(List<RecordedEventEntry> recordedEvents, int eventIndex) {
+        long timestamp = recordedEvents.get(eventIndex).getTimestamp();
+        for (int i = eventIndex; i < recordedEvents.size() && recordedEvents.get(i).getTimestamp() == timestamp; i++) {
+            if (ATTACK_BUTTON.equals(recordedEvents.get(i).getEventClass())) {
+                return true;
+            }
+        }
+        for (int i = eventIndex; i >= 0 && recordedEvents.get(i).getTimestamp() == timestamp; i--) {
+            if (ATTACK_BUTTON.equals(recordedEvents.get(i).getEventClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Only reads the central directories of the chunk zips, since the chunk names are all that is needed.
+     * @param worldPath the folder of the chunk zips of the saved world.
+     * @param origin the block the recorded interactions happened at.
+     * @return the block offsets from the chunk of the origin to the other saved chunks, nearest first.
+     */
+    private List<Vector3i> findChunkOffsets(Path worldPath, Vector3i origin) throws IOException {
+        List<Vector3i> offsets = Lists.newArrayList();
+        if (!Files.isDirectory(worldPath)) {
+            return offsets;
+        }
+        int originX = Math.floorDiv(origin.x, ChunkConstants.SIZE_X);
+        int originY = Math.floorDiv(origin.y, ChunkConstants.SIZE_Y);
+        int originZ = Math.floorDiv(origin.z, ChunkConstants.SIZE_Z);
+        try (DirectoryStream<Path> chunkZips = Files.newDirectoryStream(worldPath, CHUNK_ZIP_PATTERN)) {
+            for (Path chunkZip : chunkZips) {
+                try (ZipFile zipFile = new ZipFile(chunkZip.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        Vector3i chunk = parseChunkPosition(entries.nextElement().getName());
+                        if (chunk != null && (chunk.x != originX || chunk.y != originY || chunk.z != originZ)) {
+                            offsets.add(new Vector3i((chunk.x - originX) * ChunkConstants.SIZE_X,
+                                    (chunk.y - originY) * ChunkConstants.SIZE_Y, (chunk.z - originZ) * ChunkConstants.SIZE_Z));
+                        }
+                    }
+                }
+            }
+        }
+        offsets.sort(Comparator.comparingLong(offset -> (long) offset.x * offset.x + (long) offset.y * offset.y
+                + (long) offset.z * offset.z));
+        return offsets;
+    }
+
+    /**
+     * @param name the name of a chunk entry, such as "-2.0.3.chunk".
+     * @return the position of the chunk, or null if the name is not one of a chunk.
+     */
+    private static Vector3i parseChunkPosition(String name) {
+        if (!name.endsWith(CHUNK_EXTENSION)) {
+            return null;
+        }
+        String[] parts = name.substring(0, name.length() - CHUNK_EXTENSION.length()).split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new Vector3i(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves every timestamp by up to {@link #timestampJitterMs} in either direction. Events that were recorded in the
+     * same frame stay in the same frame, and no event is moved before the one recorded before it.
+     */
+    private void jitterTimestamps(List<RecordedEventEntry> events) {
+        if (timestampJitterMs == 0) {
+            return;
+        }
+        Random random = new Random(seed);
+        long recordedTimestamp = Long.MIN_VALUE;
+        long jitteredTimestamp = 0;
+        for (int i = 0; i < events.size(); i++) {
+            RecordedEventEntry event = events.get(i);
+            if (event.getTimestamp() != recordedTimestamp) {
+                recordedTimestamp = event.getTimestamp();
+                long jitter = random.nextInt(2 * timestampJitterMs + 1) - timestampJitterMs;
+                jitteredTimestamp = Math.max(jitteredTimestamp, Math.max(0, recordedTimestamp + jitter));
+            }
+            events.set(i, withData(event, jitteredTimestamp, event.getEventData()));
+        }
+    }
+
+    private static RecordedEventEntry withData(RecordedEventEntry event, long timestamp, JsonObject eventData) {
+        return new RecordedEventEntry(event.getEntityId(), timestamp, event.getIndex(), event.getEventClass(), eventData);
+    }
+
+    private static Vector3i getVector(JsonObject eventData, String field) {
+        if (eventData == null || !eventData.has(field) || !eventData.get(field).isJsonObject()) {
+            return null;
+        }
+        JsonObject vector = eventData.getAsJsonObject(field);
+        return new Vector3i(vector.get("x").getAsInt(), vector.get("y").getAsInt(), vector.get("z").getAsInt());
+    }
+
+    private static void shift(JsonObject eventData, String field, Vector3i offset) {
+        if (eventData.has(field) && eventData.get(field).isJsonObject()) {
+            shift(eventData.getAsJsonObject(field), offset);
+        }
+    }
+
+    /**
+     * Adds an offset to a vector stored as an object with "x", "y" and "z", keeping integer vectors as integers.
+     */
+    private static void shift(JsonObject vector, Vector3i offset) {
+        shiftComponent(vector, "x", offset.x);
+        shiftComponent(vector, "y", offset.y);
+        shiftComponent(vector, "z", offset.z);
+    }
+
+    private static void shiftComponent(JsonObject vector, String component, int offset) {
+        String value = vector.get(component).getAsString();
+        if (value.contains(".") || value.contains("E") || value.contains("e")) {
+            vector.addProperty(component, vector.get(component).getAsDouble() + offset);
+        } else {
+            vector.addProperty(component, vector.get(component).getAsLong() + offset);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends JsonElement> T copy(T element) {
+        return (T) new JsonParser().parse(element.toString());
+    }
+
+    /**
+     * Generates a variant of a recording of the recordings folder into the variants folder. Arguments: the title of the
+     * recording, the title of the variant and any of "--mouseAxisFactor N", "--blockBreakRepeats N", "--jitterMs N",
+     * "--seed N", "--recordings PATH" and "--variants PATH".
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RecordingVariantGenerator <recording> <variant> [--mouseAxisFactor N] "
+                    + "[--blockBreakRepeats N] [--jitterMs N] [--seed N] [--recordings PATH] [--variants PATH]");
+            System.exit(2);
+        }
+        RecordingVariantGenerator generator = new RecordingVariantGenerator();
+        Path recordingsPath = DEFAULT_RECORDINGS_PATH;
+        Path variantsPath = DEFAULT_VARIANTS_PATH;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--mouseAxisFactor":
+                    generator.setMouseAxisFactor(Integer.parseInt(value));
+                    break;
+                case "--blockBreakRepeats":
+                    generator.setBlockBreakRepeats(Integer.parseInt(value));
+                    break;
+                case "--jitterMs":
+                    generator.setTimestampJitterMs(Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                case "--recordings":
+                    recordingsPath = Paths.get(value);
+                    break;
+                case "--variants":
+                    variantsPath = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        generator.generate(recordingsPath.resolve(args[0]), variantsPath.resolve(args[1]), args[1]);
+    }
+}
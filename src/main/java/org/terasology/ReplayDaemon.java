@@ -0,0 +1,411 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A long-lived process that runs replay tests on request, so they do not pay for JVM startup, class loading and JIT
+ * warm-up every time, similar to the Gradle daemon.
+ * <p>
+ * The daemon loads the engine classes when it starts and then listens on a local port. Each line it receives is a job
+ * in JSON, such as
+ * {@code {"token": "...", "title": "Woodcut", "headless": true, "assertionClass": "org.terasology.replayTests.WoodCutGoldenStateAcceptanceTest"}}.
+ * Since jobs load and run arbitrary classes, every job must carry the token the daemon generates when it starts. The
+ * token is written to a file only the user running the daemon can read, {@link #DEFAULT_TOKEN_PATH} by default, so other
+ * users of the machine cannot submit jobs even though they can connect to the port. Jobs with a missing or wrong token
+ * are answered with an error and not run.
+ * Jobs run one at a time with JUnit. The title and the headless flag are optional; when given, they replace the ones
+ * the test passes to {@link AcceptanceTestEnvironment#runTest(String, boolean)}, so the assertion class must then extend
+ * {@link AcceptanceTestEnvironment}, otherwise the job fails with an error. While a job runs, the daemon writes back
+ * one JSON line per test event, then a "result" line, the "metrics" of the run and a final "done" line. The metrics are
+ * the {@link ReplayPerformanceRecord} of the replay the job ran, or, for tests that do not replay through
+ * {@link AcceptanceTestEnvironment}, the run time, garbage collection and peak heap of the whole job. The job
+ * {@code {"command": "stop"}} stops the daemon. Jobs are sent by {@link ReplayDaemonClient}.
+ * <p>
+ * When started with "--testClasses PATH", the assertion classes are loaded from that folder again for every job, so
+ * recompiled assertions are picked up without restarting the daemon. For that, the folder must not be on the classpath
+ * of the daemon itself.
+ */
+public class ReplayDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 25780;
+    public static final Path DEFAULT_TOKEN_PATH = Paths.get("modules/TestReplayModule/build/replayDaemon.token");
+    public static final String STOP_COMMAND = "stop";
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayDaemon.class);
+    private static final int TOKEN_BYTES = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+
+    /** Engine classes loaded when the daemon starts, together with the classes they reference. */
+    private static final String[] WARM_UP_CLASSES = {
+            "org.terasology.engine.TerasologyEngine",
+            "org.terasology.engine.TerasologyEngineBuilder",
+            "org.terasology.engine.modes.StateLoading",
+            "org.terasology.engine.modes.StateIngame",
+            "org.terasology.engine.modes.StateMainMenu",
+            "org.terasology.engine.subsystem.headless.HeadlessGraphics",
+            "org.terasology.engine.subsystem.headless.HeadlessAudio",
+            "org.terasology.engine.subsystem.headless.HeadlessInput",
+            "org.terasology.engine.subsystem.headless.HeadlessTimer",
+            "org.terasology.recording.RecordAndReplayStatus",
+            "org.terasology.ReplayTestingEnvironment",
+            "org.terasology.AcceptanceTestEnvironment"
+    };
+
+    private final ServerSocket serverSocket;
+    private final Path testClassesPath;
+    private final Path tokenPath;
+    private final byte[] token;
+    private final Gson gson = new Gson();
+    private volatile boolean isStopped;
+
+    /**
+     * @param port the local port to listen on, or 0 for any free port.
+     * @param testClassesPath the folder the assertion classes are loaded from for every job, or null to load them from
+     * the classpath of the daemon.
+     * @param tokenPath the file the token of the daemon is written to, replaced if it exists and deleted when the daemon
+     * is closed.
+     * @throws IOException
+     */
+    public ReplayDaemon(int port, Path testClassesPath, Path tokenPath) throws IOException {
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.testClassesPath = testClassesPath;
+        this.tokenPath = tokenPath;
+        this.token = createToken();
+        try {
+            writeToken(tokenPath, token);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    private static byte[] createToken() {
+        byte[] randomBytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(randomBytes);
+        StringBuilder hex = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte randomByte : randomBytes) {
+            hex.append(String.format("%02x", randomByte));
+        }
+        return hex.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the token file readable and writable only by its owner before writing the token, so there is no moment in
+     * which other users could read it.
+     */
+    private static void writeToken(Path tokenPath, byte[] token) throws IOException {
+        Path parentPath = tokenPath.toAbsolutePath().getParent();
+        Files.createDirectories(parentPath);
+        Files.deleteIfExists(tokenPath);
+        if (Files.getFileStore(parentPath).supportsFileAttributeView("posix")) {
+            Files.createFile(tokenPath, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } else {
+            Files.createFile(tokenPath);
+            File tokenFile = tokenPath.toFile();
+            if (!(tokenFile.setReadable(false, false) && tokenFile.setReadable(true, true)
+                    && tokenFile.setWritable(false, false) && tokenFile.setWritable(true, true))) {
+                throw new IOException("Could not restrict the permissions of " + tokenPath);
+            }
+        }
+        Files.write(tokenPath, token);
+    }
+
+    /**
+     * Loads the engine classes, so the first job does not have to.
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        int loaded = 0;
+        for (String className : WARM_UP_CLASSES) {
+            try {
+                Class.forName(className);
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.warn("Could not load {} while warming up", className, e);
+            }
+        }
+        logger.info("Loaded {} engine classes in {} ms", loaded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Accepts connections and runs their jobs until the daemon is stopped.
+     */
+    public void serve() {
+        logger.info("Replay daemon listening on port {}", getPort());
+        while (!isStopped) {
+            try (Socket socket = serverSocket.accept();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+                String line;
+                while (!isStopped && (line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        handle(line, writer);
+                    }
+                }
+            } catch (IOException e) {
+                if (!isStopped) {
+                    logger.warn("Replay daemon connection failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(String line, PrintWriter writer) {
+        ReplayJob job;
+        try {
+            job = gson.fromJson(line, ReplayJob.class);
+        } catch (JsonParseException e) {
+            job = null;
+        }
+        if (job == null) {
+            writeLine(writer, "error", "message", "Malformed job: " + line);
+            writeLine(writer, "done");
+        } else if (!isAuthorized(job)) {
+            logger.warn("Rejected a replay daemon job without a valid token");
+            writeLine(writer, "error", "message", "The job has no valid token; read it from " + tokenPath);
+            writeLine(writer, "done");
+        } else if (STOP_COMMAND.equals(job.command)) {
+            writeLine(writer, "stopped");
+            close();
+        } else if (job.assertionClass == null) {
+            writeLine(writer, "error", "message", "The job has no assertionClass");
+            writeLine(writer, "done");
+        } else {
+            run(job, writer);
+            writeLine(writer, "done");
+        }
+    }
+
+    private boolean isAuthorized(ReplayJob job) {
+        return job.token != null && MessageDigest.isEqual(token, job.token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs a job and writes its results.
+     * @param job the job.
+     * @param writer receives one JSON line per test event and result.
+     */
+    void run(ReplayJob job, PrintWriter writer) {
+        ReplayPerformanceRecord jobPerformance = ReplayPerformanceRecord.start(job.title, job.assertionClass,
+                job.headless == null || job.headless);
+        setProperty(AcceptanceTestEnvironment.TITLE_PROPERTY, job.title);
+        setProperty(AcceptanceTestEnvironment.HEADLESS_PROPERTY, job.headless == null ? null : job.headless.toString());
+        try (URLClassLoader classLoader = createClassLoader()) {
+            Class<?> assertionClass = Class.forName(job.assertionClass, true, classLoader);
+            if ((job.title != null || job.headless != null) && !AcceptanceTestEnvironment.class.isAssignableFrom(assertionClass)) {
+                writeLine(writer, "error", "message", job.assertionClass + " does not extend AcceptanceTestEnvironment, "
+                        + "so the title and the headless flag of the job cannot be applied to it");
+                return;
+            }
+            JUnitCore core = new JUnitCore();
+            core.addListener(new StreamingListener(writer));
+            Result result = core.run(assertionClass);
+            JsonObject resultLine = createLine("result");
+            resultLine.addProperty("success", result.wasSuccessful());
+            resultLine.addProperty("runCount", result.getRunCount());
+            resultLine.addProperty("failureCount", result.getFailureCount());
+            resultLine.addProperty("ignoreCount", result.getIgnoreCount());
+            resultLine.addProperty("runTimeMs", result.getRunTime());
+            writer.println(resultLine);
+            writeMetrics(jobPerformance, writer);
+        } catch (ClassNotFoundException | LinkageError | IOException e) {
+            writeLine(writer, "error", "message", "Could not load " + job.assertionClass + ": " + e);
+        } finally {
+            System.clearProperty(AcceptanceTestEnvironment.TITLE_PROPERTY);
+            System.clearProperty(AcceptanceTestEnvironment.HEADLESS_PROPERTY);
+        }
+    }
+
+    private URLClassLoader createClassLoader() throws MalformedURLException {
+        URL[] urls = testClassesPath == null ? new URL[0] : new URL[] {testClassesPath.toUri().toURL()};
+        return new URLClassLoader(urls, getClass().getClassLoader());
+    }
+
+    private static void setProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Writes the performance record of the replay the job ran, or the performance of the whole job if it did not finish
+     * a replay through {@link AcceptanceTestEnvironment}.
+     * @param jobPerformance the record started when the job started.
+     */
+    private void writeMetrics(ReplayPerformanceRecord jobPerformance, PrintWriter writer) {
+        ReplayPerformanceRecord performance = AcceptanceTestEnvironment.getLastPerformanceRecord();
+        if (performance == null || performance.getStartedAt() < jobPerformance.getStartedAt()) {
+            jobPerformance.finish(null);
+            performance = jobPerformance;
+        }
+        JsonObject metricsLine = gson.toJsonTree(performance).getAsJsonObject();
+        metricsLine.addProperty("type", "metrics");
+        writer.println(metricsLine);
+    }
+
+    private static JsonObject createLine(String type) {
+        JsonObject line = new JsonObject();
+        line.addProperty("type", type);
+        return line;
+    }
+
+    private static void writeLine(PrintWriter writer, String type) {
+        writer.println(createLine(type));
+    }
+
+    private static void writeLine(PrintWriter writer, String type, String key, String value) {
+        JsonObject line = createLine(type);
+        line.addProperty(key, value);
+        writer.println(line);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public boolean isStopped() {
+        return isStopped;
+    }
+
+    public Path getTokenPath() {
+        return tokenPath;
+    }
+
+    /**
+     * Stops the daemon once the current job has finished and deletes its token file.
+     */
+    @Override
+    public void close() {
+        isStopped = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the replay daemon socket", e);
+        }
+        try {
+            Files.deleteIfExists(tokenPath);
+        } catch (IOException e) {
+            logger.warn("Could not delete the replay daemon token {}", tokenPath, e);
+        }
+    }
+
+    /**
+     * Starts a daemon. Arguments: any of "--port N", "--testClasses PATH" and "--token PATH".
+     */
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        Path testClassesPath = null;
+        Path tokenPath = DEFAULT_TOKEN_PATH;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--testClasses":
+                    testClassesPath = Paths.get(args[i + 1]);
+                    break;
+                case "--token":
+                    tokenPath = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        try (ReplayDaemon daemon = new ReplayDaemon(port, testClassesPath, tokenPath)) {
+            daemon.warmUp();
+            daemon.serve();
+        }
+    }
+
+    /**
+     * A job sent to the daemon, as one line of JSON.
+     */
+    static class ReplayJob {
+        String token;
+        String command;
+        String title;
+        Boolean headless;
+        String assertionClass;
+    }
+
+    /**
+     * Writes a JSON line for every test that starts, fails or finishes.
+     */
+    private static class StreamingListener extends RunListener {
+        private final PrintWriter writer;
+
+        StreamingListener(PrintWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void testStarted(Description description) {
+            writeLine(writer, "testStarted", "test", description.getDisplayName());
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            JsonObject line = createLine("testFailure");
+            line.addProperty("test", failure.getDescription().getDisplayName());
+            line.addProperty("message", String.valueOf(failure.getMessage()));
+            line.addProperty("trace", failure.getTrace());
+            writer.println(line);
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            writeLine(writer, "testFinished", "test", description.getDisplayName());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Sends jobs to a running {@link ReplayDaemon} and receives their results. Every job carries the token of the daemon,
+ * read from the token file the daemon wrote when it started. Example:
+ * <pre>   {@code
+ * String token = ReplayDaemonClient.readToken(ReplayDaemon.DEFAULT_TOKEN_PATH);
+ * try (ReplayDaemonClient client = new ReplayDaemonClient(ReplayDaemon.DEFAULT_PORT, token)) {
+ *     boolean success = client.submit("Woodcut", true, "org.terasology.replayTests.WoodCutGoldenStateAcceptanceTest",
+ *             System.out::println);
+ * }
+ * }</pre>
+ * The same can be done from the command line with {@link #main(String[])}.
+ */
+public class ReplayDaemonClient implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final PrintWriter writer;
+    private final String token;
+
+    /**
+     * Connects to a daemon on this machine.
+     * @param port the port of the daemon.
+     * @param token the token of the daemon, see {@link #readToken(Path)}.
+     * @throws IOException
+     */
+    public ReplayDaemonClient(int port, String token) throws IOException {
+        this.token = token;
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * @param tokenPath the token file written by the daemon.
+     * @return the token of the daemon.
+     * @throws IOException if the file cannot be read, such as when the daemon is not running.
+     */
+    public static String readToken(Path tokenPath) throws IOException {
+        return new String(Files.readAllBytes(tokenPath), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Runs a job on the daemon and waits until it is done.
+     * @param title the title of the replay, or null to use the one of the assertion class.
+     * @param headless if the engine should be headless, or null to use the flag of the assertion class.
+     * @param assertionClass the full name of the replay test class, which must extend {@link AcceptanceTestEnvironment}
+     * if a title or a headless flag is given.
+     * @param output receives every line the daemon writes back while the job runs.
+     * @return if the job ran and all of its tests passed.
+     * @throws IOException if the connection is lost before the job is done.
+     */
+    public boolean submit(String title, Boolean headless, String assertionClass, Consumer<String> output) throws IOException {
+        JsonObject job = createJob();
+        job.addProperty("title", title);
+        job.addProperty("headless", headless);
+        job.addProperty("assertionClass", assertionClass);
+        writer.println(job);
+
+        boolean success = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            output.accept(line);
+            JsonObject response = new JsonParser().parse(line).getAsJsonObject();
+            String type = response.get("type").getAsString();
+            if ("result".equals(type)) {
+                success = response.get("success").getAsBoolean();
+            } else if ("done".equals(type)) {
+                return success;
+            }
+        }
+        throw new IOException("The replay daemon closed the connection before the job was done");
+    }
+
+    /**
+     * Stops the daemon.
+     */
+    public void stopDaemon() throws IOException {
+        JsonObject job = createJob();
+        job.addProperty("command", ReplayDaemon.STOP_COMMAND);
+        writer.println(job);
+        reader.readLine();
+    }
+
+    private JsonObject createJob() {
+        JsonObject job = new JsonObject();
+        job.addProperty("token", token);
+        return job;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Submits one job and prints what the daemon writes back. Arguments: the full name of the assertion class,
+     * optionally followed by the title of the replay, and any of "--headless", "--headed", "--port N" and
+     * "--token PATH"; or "--stop" to stop the daemon. Exits with status 1 if a test failed.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = ReplayDaemon.DEFAULT_PORT;
+        Path tokenPath = ReplayDaemon.DEFAULT_TOKEN_PATH;
+        Boolean headless = null;
+        boolean isStop = false;
+        String assertionClass = null;
+        String title = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--token".equals(args[i]) && i + 1 < args.length) {
+                tokenPath = Paths.get(args[++i]);
+            } else if ("--headless".equals(args[i])) {
+                headless = true;
+            } else if ("--headed".equals(args[i])) {
+                headless = false;
+            } else if ("--stop".equals(args[i])) {
+                isStop = true;
+            } else if (assertionClass == null) {
+                assertionClass = args[i];
+            } else {
+                title = args[i];
+            }
+        }
+        if (!isStop && assertionClass == null) {
+            System.err.println("Usage: ReplayDaemonClient <assertionClass> [title] [--headless|--headed] [--port N] "
+                    + "[--token PATH] | --stop [--port N] [--token PATH]");
+            System.exit(2);
+        }
+        try (ReplayDaemonClient client = new ReplayDaemonClient(port, readToken(tokenPath))) {
+            if (isStop) {
+                client.stopDaemon();
+                return;
+            }
+            boolean success = client.submit(title, headless, assertionClass, System.out::println);
+            System.exit(success ? 0 : 1);
+        }
+    }
+}
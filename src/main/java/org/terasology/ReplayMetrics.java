@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Throughput of a replay, measured by {@link ReplayTestingEnvironment} from the moment the replay status is REPLAYING
+ * until it is REPLAY_FINISHED. The values are written by the game thread and can be read by the test thread once the
+ * replay has finished.
+ */
+public class ReplayMetrics {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private volatile long startWallNanos;
+    private volatile long endWallNanos;
+    private volatile long startGameTimeMs;
+    private volatile long endGameTimeMs;
+    private volatile long tickCount;
+    private volatile long peakUsedHeap;
+    private volatile boolean isRunning;
+
+    void start(long gameTimeMs) {
+        startWallNanos = System.nanoTime();
+        startGameTimeMs = gameTimeMs;
+        tickCount = 0;
+        peakUsedHeap = 0;
+        isRunning = true;
+    }
+
+    void tick() {
+        tickCount++;
+        peakUsedHeap = Math.max(peakUsedHeap, getUsedHeap());
+    }
+
+    /**
+     * @return the heap used by all heap pools together right now, in bytes.
+     */
+    static long getUsedHeap() {
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    void stop(long gameTimeMs) {
+        endWallNanos = System.nanoTime();
+        endGameTimeMs = gameTimeMs;
+        isRunning = false;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return the highest total heap used after a tick of the replay, in bytes. Sampled once per tick, so it is a heap
+     * size the replay actually reached, unlike the sum of the peaks of each heap pool, which are reached at different
+     * times.
+     */
+    public long getPeakUsedHeap() {
+        return peakUsedHeap;
+    }
+
+    /**
+     * @return the wall-clock time the replay took, in milliseconds.
+     */
+    public double getWallTimeMs() {
+        long end = isRunning ? System.nanoTime() : endWallNanos;
+        return (end - startWallNanos) / 1_000_000.0;
+    }
+
+    /**
+     * @return the game time simulated during the replay, in milliseconds.
+     */
+    public long getGameTimeMs() {
+        return endGameTimeMs - startGameTimeMs;
+    }
+
+    /**
+     * @return how many ticks were run per wall-clock second.
+     */
+    public double getTicksPerSecond() {
+        double wallTimeMs = getWallTimeMs();
+        return wallTimeMs > 0 ? tickCount * 1000.0 / wallTimeMs : 0;
+    }
+
+    /**
+     * @return how many game seconds were simulated per wall-clock second.
+     */
+    public double getGameSecondsPerWallSecond() {
+        double wallTimeMs = getWallTimeMs();
+        return wallTimeMs > 0 ? getGameTimeMs() / wallTimeMs : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ticks in %.0f ms (%.1f ticks/s, %.2f game s per wall s)",
+                tickCount, getWallTimeMs(), getTicksPerSecond(), getGameSecondsPerWallSecond());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options that change how {@link ReplayTestingEnvironment} runs a replay. The default options run the replay as it
+ * always ran: following the wall clock, as fast as the engine ticks and with every system enabled. Example of a
+ * throughput run for CI:
+ * <pre>   {@code
+ * ReplayOptions options = new ReplayOptions()
+ *         .setTargetTickRate(60)
+ *         .setMaxTicksPerSecond(ReplayOptions.UNBOUNDED)
+ *         .skipSystems(ReplayOptions.PRESENTATION_SYSTEMS);
+ * environment.setOptions(options);
+ * }</pre>
+ */
+public class ReplayOptions {
+
+    /** Used as the tick rate or the maximum ticks per second to disable the respective limit. */
+    public static final float UNBOUNDED = 0;
+
+    /**
+     * Markers of systems that only present the game to the player, such as audio, particles and animation, and do not
+     * affect the outcome of a replay.
+     */
+    public static final List<String> PRESENTATION_SYSTEMS = ImmutableList.of("Audio", "Sound", "Particle", "Animation");
+
+    private float targetTickRate = UNBOUNDED;
+    private float maxTicksPerSecond = UNBOUNDED;
+    private List<String> skippedSystems = Lists.newArrayList();
+
+    /**
+     * Sets the simulated tick rate of headless replays. When set, every tick advances the game time by
+     * 1 / tickRate seconds instead of following the wall clock. Headed replays always follow the wall clock.
+     * @param tickRate the simulated ticks per game second, or {@link #UNBOUNDED} to follow the wall clock.
+     * @return these options.
+     */
+    public ReplayOptions setTargetTickRate(float tickRate) {
+        this.targetTickRate = tickRate;
+        return this;
+    }
+
+    /**
+     * Limits how many ticks are run per wall-clock second.
+     * @param ticksPerSecond the maximum ticks per wall-clock second, or {@link #UNBOUNDED} to run as fast as possible.
+     * @return these options.
+     */
+    public ReplayOptions setMaxTicksPerSecond(float ticksPerSecond) {
+        this.maxTicksPerSecond = ticksPerSecond;
+        return this;
+    }
+
+    /**
+     * Stops the event handlers of systems whose class name contains one of the markers once the replay starts.
+     * @param markers parts of the class names of the systems, such as {@link #PRESENTATION_SYSTEMS}.
+     * @return these options.
+     */
+    public ReplayOptions skipSystems(Collection<String> markers) {
+        this.skippedSystems.addAll(markers);
+        return this;
+    }
+
+    public float getTargetTickRate() {
+        return targetTickRate;
+    }
+
+    public float getMaxTicksPerSecond() {
+        return maxTicksPerSecond;
+    }
+
+    public List<String> getSkippedSystems() {
+        return Collections.unmodifiableList(skippedSystems);
+    }
+
+    /**
+     * @return if the replay time is simulated by a fixed step instead of following the wall clock.
+     */
+    public boolean isTimeSimulated() {
+        return targetTickRate > 0;
+    }
+
+    /**
+     * @param system a system of the engine.
+     * @return if the system should be skipped during the replay.
+     */
+    public boolean isSkipped(Object system) {
+        String name = system.getClass().getSimpleName();
+        for (String marker : skippedSystems) {
+            if (name.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Compares the latest run of a recording against the runs before it in its {@link ReplayPerformanceHistory} and
+ * reports the metrics that got significantly worse. Only runs of the same test with the same headless flag are compared
+ * against each other, since a headed run of a recording is not comparable to a headless one.
+ * <p>
+ * A metric is flagged when the latest value falls outside the one-sided 95% prediction interval of the previous runs,
+ * based on Student's t distribution, and differs from their mean by at least {@value #MIN_RELATIVE_CHANGE} of it. The
+ * second condition keeps metrics with little noise, such as a peak heap that barely changes, from being flagged for
+ * negligible differences.
+ * <p>
+ * Run {@link #main(String[])} with the titles of the recordings to compare, or with no titles to compare all of them.
+ * The options "--window N" and "--history PATH" set the amount of previous runs and the history folder. The command
+ * exits with status 1 if any metric got worse, so it can fail a CI job.
+ */
+public class ReplayPerformanceComparison {
+
+    public static final int DEFAULT_WINDOW = 10;
+    public static final int MIN_PREVIOUS_RUNS = 3;
+    public static final double MIN_RELATIVE_CHANGE = 0.05;
+
+    private static final String[] METRICS = {
+            ReplayPerformanceRecord.TIME_TO_REPLAYING,
+            ReplayPerformanceRecord.REPLAY_DURATION,
+            ReplayPerformanceRecord.TICKS_PER_SECOND,
+            ReplayPerformanceRecord.GC_TIME,
+            ReplayPerformanceRecord.PEAK_HEAP
+    };
+
+    /** One-sided 95% critical values of Student's t distribution for 1 to 30 degrees of freedom. */
+    private static final double[] T_95 = {
+            6.314, 2.920, 2.353, 2.132, 2.015, 1.943, 1.895, 1.860, 1.833, 1.812,
+            1.796, 1.782, 1.771, 1.761, 1.753, 1.746, 1.740, 1.734, 1.729, 1.725,
+            1.721, 1.717, 1.714, 1.711, 1.708, 1.706, 1.703, 1.701, 1.699, 1.697
+    };
+    private static final double Z_95 = 1.645;
+
+    private ReplayPerformanceComparison() {
+    }
+
+    /**
+     * Compares the last record of a history against the records before it of the same series, see
+     * {@link ReplayPerformanceRecord#isSameSeries(ReplayPerformanceRecord)}.
+     * @param history the records of one recording, oldest first.
+     * @param window the maximum amount of previous records compared against.
+     * @return a description of each metric that got significantly worse, or an empty list if none did or if there are
+     * fewer than {@value #MIN_PREVIOUS_RUNS} previous records of the same series.
+     */
+    public static List<String> findRegressions(List<ReplayPerformanceRecord> history, int window) {
+        List<String> regressions = Lists.newArrayList();
+        if (history.isEmpty()) {
+            return regressions;
+        }
+        ReplayPerformanceRecord latest = history.get(history.size() - 1);
+        List<ReplayPerformanceRecord> previous = Lists.newArrayList();
+        for (int i = history.size() - 2; i >= 0 && previous.size() < window; i--) {
+            if (history.get(i).isSameSeries(latest)) {
+                previous.add(history.get(i));
+            }
+        }
+        int previousCount = previous.size();
+        if (previousCount < MIN_PREVIOUS_RUNS) {
+            return regressions;
+        }
+        for (String metric : METRICS) {
+            double mean = 0;
+            for (ReplayPerformanceRecord record : previous) {
+                mean += record.getMetric(metric);
+            }
+            mean /= previousCount;
+            double variance = 0;
+            for (ReplayPerformanceRecord record : previous) {
+                double deviation = record.getMetric(metric) - mean;
+                variance += deviation * deviation;
+            }
+            variance /= previousCount - 1;
+            double margin = getCriticalValue(previousCount - 1) * Math.sqrt(variance * (1 + 1.0 / previousCount));
+            double value = latest.getMetric(metric);
+            double change = ReplayPerformanceRecord.isHigherBetter(metric) ? mean - value : value - mean;
+            if (change > margin && change >= MIN_RELATIVE_CHANGE * Math.abs(mean)) {
+                regressions.add(String.format("%s: %.1f against a mean of %.1f over the previous %d runs (limit %.1f)",
+                        metric, value, mean, previousCount,
+                        ReplayPerformanceRecord.isHigherBetter(metric) ? mean - margin : mean + margin));
+            }
+        }
+        return regressions;
+    }
+
+    private static double getCriticalValue(int degreesOfFreedom) {
+        return degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : Z_95;
+    }
+
+    private static boolean isLastOfSeries(List<ReplayPerformanceRecord> records, int index) {
+        for (int i = index + 1; i < records.size(); i++) {
+            if (records.get(i).isSameSeries(records.get(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayPerformanceHistory history = ReplayPerformanceHistory.getDefault();
+        int window = DEFAULT_WINDOW;
+        List<String> recordings = Lists.newArrayList();
+        for (int i = 0; i < args.length; i++) {
+            if ("--window".equals(args[i]) && i + 1 < args.length) {
+                window = Integer.parseInt(args[++i]);
+            } else if ("--history".equals(args[i]) && i + 1 < args.length) {
+                history = new ReplayPerformanceHistory(Paths.get(args[++i]));
+            } else {
+                recordings.add(args[i]);
+            }
+        }
+        if (recordings.isEmpty()) {
+            recordings = history.getRecordings();
+        }
+        boolean hasRegressions = false;
+        for (String recording : recordings) {
+            List<ReplayPerformanceRecord> records = history.read(recording);
+            if (records.isEmpty()) {
+                System.out.println(recording + ": no history");
+                continue;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                if (isLastOfSeries(records, i)) {
+                    List<String> regressions = findRegressions(records.subList(0, i + 1), window);
+                    System.out.println(records.get(i));
+                    for (String regression : regressions) {
+                        System.out.println("  SLOWER " + regression);
+                    }
+                    hasRegressions |= !regressions.isEmpty();
+                }
+            }
+        }
+        System.exit(hasRegressions ? 1 : 0);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The performance history of the replay tests, kept as one file of {@link ReplayPerformanceRecord}s per recording, one
+ * JSON record per line. The files only grow by appending, so they can be collected by a CI job or plotted as they are.
+ */
+public class ReplayPerformanceHistory {
+
+    /** The system property that overrides the folder of the history files. */
+    public static final String HISTORY_PATH_PROPERTY = "replay.performanceHistory";
+    public static final Path DEFAULT_HISTORY_PATH = Paths.get("modules/TestReplayModule/build/replayPerformance");
+    public static final String HISTORY_FILE_EXTENSION = ".jsonl";
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayPerformanceHistory.class);
+
+    private final Path historyPath;
+    private final Gson gson = new Gson();
+
+    /**
+     * @param historyPath the folder of the history files.
+     */
+    public ReplayPerformanceHistory(Path historyPath) {
+        this.historyPath = historyPath;
+    }
+
+    /**
+     * @return the history in the folder set by {@value #HISTORY_PATH_PROPERTY}, or in the default folder.
+     */
+    public static ReplayPerformanceHistory getDefault() {
+        String property = System.getProperty(HISTORY_PATH_PROPERTY);
+        return new ReplayPerformanceHistory(property != null ? Paths.get(property) : DEFAULT_HISTORY_PATH);
+    }
+
+    /**
+     * Appends a record to the history of its recording.
+     * @param record the record of a finished run.
+     * @throws IOException
+     */
+    public void append(ReplayPerformanceRecord record) throws IOException {
+        Path file = getHistoryFile(record.getRecording());
+        Files.createDirectories(historyPath);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(gson.toJson(record));
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Reads the history of a recording. Lines that cannot be parsed, such as a line cut short by a killed run, are
+     * skipped.
+     * @param recording the title of the recording.
+     * @return the records of the recording, oldest first, or an empty list if it has no history.
+     * @throws IOException
+     */
+    public List<ReplayPerformanceRecord> read(String recording) throws IOException {
+        List<ReplayPerformanceRecord> records = Lists.newArrayList();
+        Path file = getHistoryFile(recording);
+        if (!Files.exists(file)) {
+            return records;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    records.add(gson.fromJson(line, ReplayPerformanceRecord.class));
+                } catch (JsonParseException e) {
+                    logger.warn("Skipped a malformed line of {}", file);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the titles of the recordings that have a history.
+     * @throws IOException
+     */
+    public List<String> getRecordings() throws IOException {
+        List<String> recordings = Lists.newArrayList();
+        if (!Files.isDirectory(historyPath)) {
+            return recordings;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(historyPath, "*" + HISTORY_FILE_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                recordings.add(name.substring(0, name.length() - HISTORY_FILE_EXTENSION.length()));
+            }
+        }
+        recordings.sort(null);
+        return recordings;
+    }
+
+    public Path getHistoryFile(String recording) {
+        return historyPath.resolve(recording + HISTORY_FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+
+/**
+ * The performance of one run of a replay test, stored as one line of the {@link ReplayPerformanceHistory} of its
+ * recording. A record is measured by calling {@link #start(String, String, boolean)} before the replay is opened,
+ * {@link #markReplaying()} when the replay status becomes REPLAYING and {@link #finish(ReplayMetrics)} once it is
+ * REPLAY_FINISHED.
+ */
+public class ReplayPerformanceRecord {
+
+    /** The names of the metrics that can be compared between runs, see {@link #getMetric(String)}. */
+    public static final String TIME_TO_REPLAYING = "timeToReplayingMs";
+    public static final String REPLAY_DURATION = "replayDurationMs";
+    public static final String TICKS_PER_SECOND = "ticksPerSecond";
+    /**
+     * The accumulated collection time reported by the garbage collectors. For concurrent collectors such as G1 and CMS it
+     * also includes the time of their concurrent phases, so it is an upper bound of the time the game was paused.
+     */
+    public static final String GC_TIME = "gcTimeMs";
+    /** The highest total heap used, sampled once per replay tick, see {@link ReplayMetrics#getPeakUsedHeap()}. */
+    public static final String PEAK_HEAP = "peakHeapBytes";
+
+    private String recording;
+    private String test;
+    private boolean headless;
+    private long startedAt;
+    private double timeToReplayingMs;
+    private double replayDurationMs;
+    private double ticksPerSecond;
+    private long gcTimeMs;
+    private long gcCount;
+    private long peakHeapBytes;
+
+    private transient long startNanos;
+    private transient long startGcTimeMs;
+    private transient long startGcCount;
+
+    /**
+     * Starts measuring a run.
+     * @param recording the title of the replayed recording.
+     * @param test the name of the test that runs the replay.
+     * @param headless if the engine of the replay is headless.
+     * @return the record of the run.
+     */
+    public static ReplayPerformanceRecord start(String recording, String test, boolean headless) {
+        ReplayPerformanceRecord record = new ReplayPerformanceRecord();
+        record.recording = recording;
+        record.test = test;
+        record.headless = headless;
+        record.startedAt = System.currentTimeMillis();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            record.startGcTimeMs += Math.max(0, collector.getCollectionTime());
+            record.startGcCount += Math.max(0, collector.getCollectionCount());
+        }
+        record.startNanos = System.nanoTime();
+        return record;
+    }
+
+    /**
+     * Records how long the replay took to load.
+     */
+    public void markReplaying() {
+        timeToReplayingMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    /**
+     * Records the replay throughput, the garbage collection since the start of the run and the peak heap of the replay.
+     * @param metrics the metrics of the finished replay, or null if the run did not replay anything, in which case the
+     * replay duration is the wall time of the whole run and the peak heap is the heap used when it finished.
+     */
+    public void finish(ReplayMetrics metrics) {
+        replayDurationMs = metrics != null ? metrics.getWallTimeMs() : (System.nanoTime() - startNanos) / 1_000_000.0;
+        ticksPerSecond = metrics != null ? metrics.getTicksPerSecond() : 0;
+        long totalGcTimeMs = 0;
+        long totalGcCount = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totalGcTimeMs += Math.max(0, collector.getCollectionTime());
+            totalGcCount += Math.max(0, collector.getCollectionCount());
+        }
+        gcTimeMs = totalGcTimeMs - startGcTimeMs;
+        gcCount = totalGcCount - startGcCount;
+        peakHeapBytes = metrics != null ? metrics.getPeakUsedHeap() : ReplayMetrics.getUsedHeap();
+    }
+
+    /**
+     * @param name one of the metric names of this class.
+     * @return the value of the metric.
+     */
+    public double getMetric(String name) {
+        switch (name) {
+            case TIME_TO_REPLAYING:
+                return timeToReplayingMs;
+            case REPLAY_DURATION:
+                return replayDurationMs;
+            case TICKS_PER_SECOND:
+                return ticksPerSecond;
+            case GC_TIME:
+                return gcTimeMs;
+            case PEAK_HEAP:
+                return peakHeapBytes;
+            default:
+                throw new IllegalArgumentException("Unknown replay metric: " + name);
+        }
+    }
+
+    /**
+     * @param name one of the metric names of this class.
+     * @return if a higher value of the metric means better performance.
+     */
+    public static boolean isHigherBetter(String name) {
+        return TICKS_PER_SECOND.equals(name);
+    }
+
+    public String getRecording() {
+        return recording;
+    }
+
+    public String getTest() {
+        return test;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * @param other another record.
+     * @return if both records are runs of the same recording by the same test, with the same headless flag, so their
+     * performance can be compared.
+     */
+    public boolean isSameSeries(ReplayPerformanceRecord other) {
+        return Objects.equals(recording, other.recording) && Objects.equals(test, other.test) && headless == other.headless;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s, %s): REPLAYING after %.0f ms, replay %.0f ms, %.1f ticks/s, GC %d ms in %d collections, peak heap %d MB",
+                recording, test, headless ? "headless" : "headed", timeToReplayingMs, replayDurationMs, ticksPerSecond, gcTimeMs, gcCount,
+                peakHeapBytes / (1024 * 1024));
+    }
+}
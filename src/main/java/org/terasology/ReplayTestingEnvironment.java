@@ -16,9 +16,14 @@
 package org.terasology;
 
 import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.terasology.config.Config;
+import org.terasology.engine.ComponentSystemManager;
 import org.terasology.engine.TerasologyEngine;
 import org.terasology.engine.TerasologyEngineBuilder;
+import org.terasology.engine.Time;
+import org.terasology.engine.modes.StateIngame;
 import org.terasology.engine.modes.StateLoading;
 import org.terasology.engine.modes.StateMainMenu;
 import org.terasology.engine.paths.PathManager;
@@ -33,7 +38,12 @@ import org.terasology.engine.subsystem.lwjgl.LwjglGraphics;
 import org.terasology.engine.subsystem.lwjgl.LwjglInput;
 import org.terasology.engine.subsystem.lwjgl.LwjglTimer;
 import org.terasology.engine.subsystem.openvr.OpenVRInput;
+import org.terasology.entitySystem.entity.EntityManager;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.event.internal.EventSystem;
+import org.terasology.entitySystem.systems.ComponentSystem;
 import org.terasology.game.GameManifest;
+import org.terasology.logic.players.LocalPlayer;
 import org.terasology.network.NetworkMode;
 import org.terasology.recording.RecordAndReplayCurrentStatus;
 import org.terasology.recording.RecordAndReplayStatus;
@@ -42,9 +52,17 @@ import org.terasology.registry.CoreRegistry;
 import org.terasology.rendering.nui.layers.mainMenu.savedGames.GameInfo;
 import org.terasology.rendering.nui.layers.mainMenu.savedGames.GameProvider;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * A base class for tests involving a full {@link TerasologyEngine} instance that runs a replay. For a better understanding
@@ -107,12 +125,34 @@ import java.util.List;
  *     }
  *
  * }</pre>
+ * <p>
+ * How the replay runs, such as a simulated tick rate for headless throughput runs, can be changed with
+ * {@link #setOptions(ReplayOptions)}, and the throughput of the replay is available through {@link #getReplayMetrics()}.
+ * <p>
+ * Besides replays, {@link #openLoadTest(String, int, long)} hosts the world of a recording on a headless server and
+ * uses the recording as the input of many simulated clients, to measure how the server scales with real player input.
  */
 public class ReplayTestingEnvironment {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayTestingEnvironment.class);
+    private static final Path HOME_PATH = Paths.get("modules/TestReplayModule/assets");
+    /** The home path of load tests while they run, so the copy of the world they host stays out of the source tree. */
+    private static final Path LOAD_TEST_HOME_PATH = Paths.get("modules/TestReplayModule/build/loadTestHome");
+
     private TerasologyEngine host;
     private List<TerasologyEngine> engines = Lists.newArrayList();
     private RecordAndReplayCurrentStatus recordAndReplayCurrentStatus;
     private boolean isInitialised;
+    private Path recordingPath;
+    private volatile RecordedEntityIdTable entityIdTable;
+    private PlayerTrajectory playerTrajectory;
+    private LongFunction<EntityRef> entityResolver;
+    private Supplier<EntityRef> clientEntity;
+    private boolean hasReplayStarted;
+    private ReplayOptions options = new ReplayOptions();
+    private SimulatedTime simulatedTime;
+    private ReplayMetrics replayMetrics = new ReplayMetrics();
+    private Path homePath = HOME_PATH;
 
     /**
      * Opens the game in the Main Menu.
@@ -145,6 +185,112 @@ public class ReplayTestingEnvironment {
         this.isInitialised = false;
     }
 
+    /**
+     * Creates a headless {@link TerasologyEngine} that hosts the world of a recording as a dedicated server and sends
+     * the events of the recording to the server as many simulated clients, each starting some time after the other.
+     * The server keeps running until all clients have sent their whole recording.
+     * <p>
+     * The world is hosted from a copy of the recording in the saves folder of "build/loadTestHome", which is deleted
+     * when the load test ends, even if it fails.
+     * @param replayTitle the title of the recording used by the clients.
+     * @param clientCount the amount of simulated clients.
+     * @param clientOffsetMs the game time between the start of one client and the next.
+     * @return the measurements of the server during the load test.
+     * @throws Exception
+     */
+    public LoadTestReport openLoadTest(String replayTitle, int clientCount, long clientOffsetMs) throws Exception {
+        Path savePath = null;
+        host = createEngine(true);
+        try {
+            host.initialize();
+            this.isInitialised = true;
+            recordAndReplayCurrentStatus = host.getFromEngineContext(RecordAndReplayCurrentStatus.class);
+            host.changeState(new StateMainMenu());
+            host.tick();
+            GameInfo replayInfo = getReplayInfo(replayTitle);
+            GameManifest manifest = replayInfo.getManifest();
+            manifest.setTitle(manifest.getTitle() + "LoadTest");
+            PathManager.getInstance().useOverrideHomePath(LOAD_TEST_HOME_PATH);
+            savePath = PathManager.getInstance().getSavePath(manifest.getTitle());
+            copyRecording(replayInfo.getSavePath(), savePath);
+            Config config = CoreRegistry.get(Config.class);
+            config.getWorldGeneration().setDefaultSeed(manifest.getSeed());
+            config.getWorldGeneration().setWorldTitle(manifest.getTitle());
+            host.changeState(new StateLoading(manifest, NetworkMode.DEDICATED_SERVER));
+
+            LoadGenerator loadGenerator = new LoadGenerator(replayInfo.getSavePath(), clientCount, clientOffsetMs);
+            loadTestLoop(loadGenerator);
+            logger.info("Load test finished: {}", loadGenerator.getReport());
+            return loadGenerator.getReport();
+        } finally {
+            if (host != null) {
+                host.shutdown();
+                host.cleanup();
+            }
+            engines = Lists.newArrayList();
+            host = null;
+            this.isInitialised = false;
+            if (savePath != null) {
+                deleteRecursively(savePath);
+            }
+            PathManager.getInstance().useOverrideHomePath(homePath);
+        }
+    }
+
+    /**
+     * The main loop of a load test: ticks the server, sends the due events of the clients and measures each tick. Ticks
+     * go through {@link #tick()}, so the simulated time advances if the options use it.
+     * @param loadGenerator the simulated clients.
+     */
+    private void loadTestLoop(LoadGenerator loadGenerator) {
+        Runtime runtime = Runtime.getRuntime();
+        while (!(host.getState() instanceof StateIngame)) {
+            if (!tick()) {
+                return;
+            }
+        }
+        Time time = CoreRegistry.get(Time.class);
+        loadGenerator.start(CoreRegistry.get(EntityManager.class), time.getGameTimeInMs());
+        while (!loadGenerator.isFinished()) {
+            long tickStart = System.nanoTime();
+            loadGenerator.tick(time.getGameTimeInMs());
+            if (!tick()) {
+                break;
+            }
+            long tickNanos = System.nanoTime() - tickStart;
+            long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+            loadGenerator.getReport().recordTick(tickNanos, loadGenerator.getQueueDepth(), usedHeap);
+        }
+        loadGenerator.stop();
+    }
+
+    /**
+     * Copies a recording to a save folder, so it can be loaded as a regular game.
+     * @param recordingPath the folder of the recording.
+     * @param savePath the folder of the save, replaced if it exists.
+     * @throws IOException
+     */
+    private static void copyRecording(Path recordingPath, Path savePath) throws IOException {
+        deleteRecursively(savePath);
+        Files.createDirectories(savePath.getParent());
+        try (Stream<Path> files = Files.walk(recordingPath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, savePath.resolve(recordingPath.relativize(file).toString()));
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
     /**
      * Load a replay while setting the RecordAndReplayStatus.
      * @param replayTitle the name of the replay to be loaded.
@@ -154,6 +300,14 @@ public class ReplayTestingEnvironment {
         recordAndReplayCurrentStatus.setStatus(RecordAndReplayStatus.PREPARING_REPLAY);
         GameInfo replayInfo = getReplayInfo(replayTitle);
         GameManifest manifest = replayInfo.getManifest();
+        synchronized (this) {
+            recordingPath = replayInfo.getSavePath();
+            entityIdTable = null;
+            playerTrajectory = null;
+            entityResolver = null;
+            clientEntity = null;
+        }
+        hasReplayStarted = false;
         CoreRegistry.get(RecordAndReplayUtils.class).setGameTitle(manifest.getTitle());
         Config config = CoreRegistry.get(Config.class);
         config.getWorldGeneration().setDefaultSeed(manifest.getSeed());
@@ -162,16 +316,91 @@ public class ReplayTestingEnvironment {
     }
 
     /**
-     * The game Main Loop where most of the processing time will be spent on.
+     * The game Main Loop where most of the processing time will be spent on. If the options limit the ticks per
+     * second, the loop sleeps between ticks to respect it.
+     * @throws InterruptedException
+     */
+    private void mainLoop() throws InterruptedException {
+        float maxTicksPerSecond = options.getMaxTicksPerSecond();
+        long tickIntervalNanos = maxTicksPerSecond > 0 ? (long) (1_000_000_000L / maxTicksPerSecond) : 0;
+        long nextTickNanos = System.nanoTime();
+        while (tick()) {
+            if (tickIntervalNanos > 0) {
+                nextTickNanos += tickIntervalNanos;
+                long sleepNanos = nextTickNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } else {
+                    nextTickNanos = System.nanoTime(); // do not run a burst of ticks after a slow one.
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a single engine tick, advancing the simulated time if it is used and tracking the replay status.
+     * @return false if the engine should stop.
      */
-    private void mainLoop() {
-        while (host.tick()) {
-            //do nothing;
+    private boolean tick() {
+        if (simulatedTime != null) {
+            simulatedTime.advance();
+        }
+        boolean isRunning = host.tick();
+        RecordedEntityIdTable table = entityIdTable;
+        if (table != null) {
+            table.refresh();
+        }
+        RecordAndReplayStatus status = getRecordAndReplayStatus();
+        if (!hasReplayStarted && status == RecordAndReplayStatus.REPLAYING) {
+            onReplayStart();
+        } else if (replayMetrics.isRunning() && status == RecordAndReplayStatus.REPLAY_FINISHED) {
+            replayMetrics.stop(CoreRegistry.get(Time.class).getGameTimeInMs());
+            logger.info("Replay finished: {}", replayMetrics);
+        }
+        if (replayMetrics.isRunning()) {
+            replayMetrics.tick();
         }
+        return isRunning;
     }
 
     /**
-     * Creates a full headed or headless TerasologyEngine. The homePath for this engine is the module's "assets" folder.
+     * Prepares the loaded replay once its status is REPLAYING: resolves the entity IDs of the recording to the live
+     * entities of the replay if a test already asked for them, stops the skipped systems and starts measuring the replay.
+     */
+    private void onReplayStart() {
+        EntityManager entityManager = CoreRegistry.get(EntityManager.class);
+        LocalPlayer localPlayer = CoreRegistry.get(LocalPlayer.class);
+        synchronized (this) {
+            entityResolver = entityManager::getEntity;
+            clientEntity = localPlayer::getClientEntity;
+            if (entityIdTable != null) {
+                entityIdTable.resolve(entityResolver, clientEntity);
+            }
+        }
+        if (!options.getSkippedSystems().isEmpty()) {
+            skipSystems();
+        }
+        hasReplayStarted = true;
+        replayMetrics.start(CoreRegistry.get(Time.class).getGameTimeInMs());
+    }
+
+    /**
+     * Unregisters the event handlers of the systems that the options mark as skipped.
+     */
+    private void skipSystems() {
+        ComponentSystemManager componentSystemManager = CoreRegistry.get(ComponentSystemManager.class);
+        EventSystem eventSystem = CoreRegistry.get(EventSystem.class);
+        for (ComponentSystem system : componentSystemManager.iterateAll()) {
+            if (options.isSkipped(system)) {
+                eventSystem.unregisterEventHandler(system);
+                logger.debug("Skipping system {} during the replay", system.getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Creates a full headed or headless TerasologyEngine. The homePath for this engine is the module's "assets" folder,
+     * unless another one was set with {@link #setHomePath(Path)}.
      * @param isHeadless if the engine should be headless.
      * @return the created engine.
      * @throws Exception
@@ -183,7 +412,6 @@ public class ReplayTestingEnvironment {
         } else {
             populateHeadedSubsystems(builder);
         }
-        Path homePath = Paths.get("modules/TestReplayModule/assets");
         PathManager.getInstance().useOverrideHomePath(homePath);
         TerasologyEngine engine = builder.build();
         engines.add(engine);
@@ -195,6 +423,7 @@ public class ReplayTestingEnvironment {
      * @param builder the builder to be populated.
      */
     private void populateHeadedSubsystems(TerasologyEngineBuilder builder) {
+        simulatedTime = null;
         builder.add(new LwjglAudio())
                 .add(new LwjglGraphics())
                 .add(new LwjglTimer())
@@ -210,9 +439,15 @@ public class ReplayTestingEnvironment {
      * @param builder the builder to be populated.
      */
     private void populateHeadlessSubsystems(TerasologyEngineBuilder builder) {
-        builder.add(new HeadlessGraphics())
-                .add(new HeadlessTimer())
-                .add(new HeadlessAudio())
+        builder.add(new HeadlessGraphics());
+        if (options.isTimeSimulated()) {
+            simulatedTime = new SimulatedTime(options.getTargetTickRate());
+            builder.add(new SimulatedHeadlessTimer(simulatedTime));
+        } else {
+            simulatedTime = null;
+            builder.add(new HeadlessTimer());
+        }
+        builder.add(new HeadlessAudio())
                 .add(new HeadlessInput());
 
         builder.add(new HibernationSubsystem());
@@ -245,4 +480,74 @@ public class ReplayTestingEnvironment {
     public boolean isInitialised() {
         return this.isInitialised;
     }
+
+    /**
+     * The table is a lookup table for tests, such as finding the live entity a recorded event targeted; the replay does
+     * not dispatch events through it. It is read from the recording on the first call, so replays whose tests do not
+     * use it do not pay for parsing the events again.
+     * @return the table that maps the entity IDs of the loaded recording to live entities, or null if no replay was
+     * loaded. Its entities are resolved once the replay status is REPLAYING.
+     * @throws UncheckedIOException if the recording cannot be read.
+     */
+    public synchronized RecordedEntityIdTable getEntityIdTable() {
+        if (entityIdTable == null && recordingPath != null) {
+            try {
+                RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+                if (entityResolver != null) {
+                    table.setResolvers(entityResolver, clientEntity);
+                }
+                entityIdTable = table;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.entityIdTable;
+    }
+
+    /**
+     * The trajectory is read from the recording on the first call, so replays whose tests do not use it do not pay for
+     * parsing the events again.
+     * @return the recorded trajectory of the player in the loaded recording, or null if no replay was loaded. Available
+     * as soon as the replay status is PREPARING_REPLAY.
+     * @throws UncheckedIOException if the recording cannot be read.
+     */
+    public synchronized PlayerTrajectory getPlayerTrajectory() {
+        if (playerTrajectory == null && recordingPath != null) {
+            try {
+                playerTrajectory = PlayerTrajectory.load(recordingPath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.playerTrajectory;
+    }
+
+    /**
+     * Sets the options of the next replay opened by this environment.
+     * @param options the options of the replay.
+     */
+    public void setOptions(ReplayOptions options) {
+        this.options = options;
+    }
+
+    public ReplayOptions getOptions() {
+        return this.options;
+    }
+
+    /**
+     * Sets the home path of the engines opened next by this environment, whose "recordings" folder holds the replays
+     * that can be opened. Used to replay recordings generated outside the source tree, such as the variants of
+     * {@link RecordingVariantGenerator}.
+     * @param homePath the home path, by default the module's "assets" folder.
+     */
+    public void setHomePath(Path homePath) {
+        this.homePath = homePath;
+    }
+
+    /**
+     * @return the throughput of the current or last replay, complete once the status is REPLAY_FINISHED.
+     */
+    public ReplayMetrics getReplayMetrics() {
+        return this.replayMetrics;
+    }
 }
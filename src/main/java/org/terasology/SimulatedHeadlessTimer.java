@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.terasology.context.Context;
+import org.terasology.engine.Time;
+import org.terasology.engine.subsystem.EngineSubsystem;
+
+/**
+ * A replacement for the HeadlessTimer subsystem that registers a {@link SimulatedTime} as the engine's time, so a
+ * headless replay runs at a fixed simulated tick rate instead of the wall clock.
+ */
+public class SimulatedHeadlessTimer implements EngineSubsystem {
+
+    private final SimulatedTime time;
+
+    public SimulatedHeadlessTimer(SimulatedTime time) {
+        this.time = time;
+    }
+
+    @Override
+    public String getName() {
+        return "Timer";
+    }
+
+    @Override
+    public void preInitialise(Context context) {
+        context.put(Time.class, time);
+    }
+}
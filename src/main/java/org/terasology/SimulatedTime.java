@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.terasology.engine.internal.TimeBase;
+
+/**
+ * A time source for headless replays that does not follow the wall clock. It only moves forward when {@link #advance()}
+ * is called, by a fixed step that corresponds to the target tick rate, so each engine tick simulates the same amount of
+ * game time no matter how long it took to run.
+ */
+public class SimulatedTime extends TimeBase {
+
+    private final long stepNanos;
+    private volatile long elapsedNanos;
+
+    /**
+     * @param tickRate the amount of ticks that make up one simulated second.
+     */
+    public SimulatedTime(float tickRate) {
+        super(0);
+        this.stepNanos = (long) (1_000_000_000L / tickRate);
+    }
+
+    /**
+     * Moves the time forward by one tick.
+     */
+    public void advance() {
+        elapsedNanos += stepNanos;
+    }
+
+    @Override
+    public long getRawTimeInMs() {
+        return elapsedNanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.logic.inventory.InventoryUtils;
+import org.terasology.logic.location.LocationComponent;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Vector3f;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.registry.CoreRegistry;
+import org.terasology.world.WorldProvider;
+
+/**
+ * Selects the parts of the game state that are stored in a golden {@link StateSnapshot}. An instance is given to
+ * {@link AcceptanceTestEnvironment#selectGoldenState(SnapshotSelection)} at each phase of a replay test. Example:
+ * <pre>   {@code
+ * protected void selectGoldenState(SnapshotSelection selection) {
+ *     EntityRef character = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
+ *     selection.location("player", character);
+ *     selection.inventory("player", character);
+ *     selection.blocks("tree", Region3i.createFromMinMax(new Vector3i(-73, 43, 84), new Vector3i(-73, 44, 84)));
+ * }
+ * }</pre>
+ */
+public class SnapshotSelection {
+
+    private final StateSnapshot snapshot = new StateSnapshot();
+
+    /**
+     * Selects the world position of an entity. Entities without a location are stored as having no values.
+     * @param label the name of the entity in the snapshot.
+     * @param entity the entity.
+     */
+    public void location(String label, EntityRef entity) {
+        LocationComponent location = entity.getComponent(LocationComponent.class);
+        if (location == null) {
+            snapshot.addFloats(label + ".location");
+            return;
+        }
+        Vector3f position = location.getWorldPosition();
+        snapshot.addFloats(label + ".location", position.x, position.y, position.z);
+    }
+
+    /**
+     * Selects the item in each inventory slot of an entity, as the hash of its prefab name, and its stack count.
+     * @param label the name of the entity in the snapshot.
+     * @param entity the entity with an inventory.
+     */
+    public void inventory(String label, EntityRef entity) {
+        int slotCount = InventoryUtils.getSlotCount(entity);
+        int[] values = new int[slotCount * 2];
+        for (int slot = 0; slot < slotCount; slot++) {
+            EntityRef item = InventoryUtils.getItemAt(entity, slot);
+            boolean hasItem = item.exists() && item.getParentPrefab() != null;
+            values[slot * 2] = hasItem ? item.getParentPrefab().getName().hashCode() : 0;
+            values[slot * 2 + 1] = InventoryUtils.getStackCount(item);
+        }
+        snapshot.addInts(label + ".inventory", values);
+    }
+
+    /**
+     * Selects the IDs of the blocks of a region of the world.
+     * @param label the name of the region in the snapshot.
+     * @param region the region, which should be loaded.
+     */
+    public void blocks(String label, Region3i region) {
+        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
+        int[] values = new int[region.volume()];
+        int i = 0;
+        for (Vector3i position : region) {
+            values[i++] = worldProvider.getBlock(position).getId();
+        }
+        snapshot.addInts(label + ".blocks", values);
+    }
+
+    /**
+     * Selects the blocks of a region of the world, as the hash of their display names. Unlike block IDs, the names do
+     * not depend on the order the blocks were registered in, so the golden values can be written from the names alone.
+     * @param label the name of the region in the snapshot.
+     * @param region the region, which should be loaded.
+     */
+    public void blockNames(String label, Region3i region) {
+        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
+        int[] values = new int[region.volume()];
+        int i = 0;
+        for (Vector3i position : region) {
+            values[i++] = worldProvider.getBlock(position).getDisplayName().hashCode();
+        }
+        snapshot.addInts(label + ".blockNames", values);
+    }
+
+    /**
+     * Selects any other values, such as the health of an entity.
+     * @param label the name of the values in the snapshot.
+     * @param values the values.
+     */
+    public void values(String label, float... values) {
+        snapshot.addFloats(label, values);
+    }
+
+    public StateSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
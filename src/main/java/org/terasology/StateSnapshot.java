@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A compact binary snapshot of selected game state, used as golden state by {@link AcceptanceTestEnvironment}.
+ * <p>
+ * A snapshot is a sequence of labeled records, each holding either floats or ints. The records are appended to a single
+ * byte array, and {@link #compare(StateSnapshot, float)} walks two snapshots in place, so comparing them does not create
+ * any objects unless a difference is found.
+ */
+public class StateSnapshot {
+
+    private static final int MAGIC = 0x52475331; // "RGS1"
+    private static final byte FLOATS = 1;
+    private static final byte INTS = 2;
+
+    private byte[] bytes;
+    private int size;
+
+    public StateSnapshot() {
+        bytes = new byte[256];
+        writeInt(MAGIC);
+    }
+
+    private StateSnapshot(byte[] bytes) {
+        this.bytes = bytes;
+        this.size = bytes.length;
+    }
+
+    /**
+     * Adds a record of floats, such as a position.
+     * @param label the name of the record, used when describing differences.
+     * @param values the values of the record.
+     */
+    public void addFloats(String label, float... values) {
+        writeHeader(FLOATS, label, values.length);
+        for (float value : values) {
+            writeInt(Float.floatToIntBits(value));
+        }
+    }
+
+    /**
+     * Adds a record of ints, such as block IDs or stack counts.
+     * @param label the name of the record, used when describing differences.
+     * @param values the values of the record.
+     */
+    public void addInts(String label, int... values) {
+        writeHeader(INTS, label, values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    /**
+     * @return if no record was added to this snapshot.
+     */
+    public boolean isEmpty() {
+        return size == Integer.BYTES;
+    }
+
+    /**
+     * Compares this snapshot against the expected one.
+     * @param expected the golden snapshot.
+     * @param tolerance the maximum difference allowed between floats.
+     * @return null if both snapshots match, otherwise a description of the first difference.
+     */
+    public String compare(StateSnapshot expected, float tolerance) {
+        ByteBuffer actualBuffer = ByteBuffer.wrap(bytes, 0, size);
+        ByteBuffer expectedBuffer = ByteBuffer.wrap(expected.bytes, 0, expected.size);
+        if (expectedBuffer.getInt() != MAGIC || actualBuffer.getInt() != MAGIC) {
+            return "Not a state snapshot";
+        }
+        while (actualBuffer.hasRemaining() && expectedBuffer.hasRemaining()) {
+            int recordStart = expectedBuffer.position();
+            byte kind = expectedBuffer.get();
+            int labelLength = expectedBuffer.getShort();
+            if (actualBuffer.get() != kind || actualBuffer.getShort() != labelLength
+                    || !sameBytes(actualBuffer, expectedBuffer, labelLength)) {
+                return "Expected record " + readLabel(expected.bytes, recordStart) + " but the snapshot has a different record";
+            }
+            actualBuffer.position(actualBuffer.position() + labelLength);
+            expectedBuffer.position(expectedBuffer.position() + labelLength);
+            int count = expectedBuffer.getInt();
+            if (actualBuffer.getInt() != count) {
+                return "Record " + readLabel(expected.bytes, recordStart) + " has a different amount of values";
+            }
+            for (int i = 0; i < count; i++) {
+                int expectedBits = expectedBuffer.getInt();
+                int actualBits = actualBuffer.getInt();
+                if (expectedBits == actualBits) {
+                    continue;
+                }
+                if (kind == INTS) {
+                    return describe(expected.bytes, recordStart, i, expectedBits, actualBits);
+                }
+                float expectedValue = Float.intBitsToFloat(expectedBits);
+                float actualValue = Float.intBitsToFloat(actualBits);
+                if (!(Math.abs(expectedValue - actualValue) <= tolerance)) {
+                    return describe(expected.bytes, recordStart, i, expectedValue, actualValue);
+                }
+            }
+        }
+        if (actualBuffer.hasRemaining() || expectedBuffer.hasRemaining()) {
+            return "The snapshots have a different amount of records";
+        }
+        return null;
+    }
+
+    private static boolean sameBytes(ByteBuffer actual, ByteBuffer expected, int length) {
+        int actualStart = actual.position();
+        int expectedStart = expected.position();
+        if (actual.remaining() < length || expected.remaining() < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (actual.get(actualStart + i) != expected.get(expectedStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(byte[] expectedBytes, int recordStart, int valueIndex, Object expected, Object actual) {
+        return "Record " + readLabel(expectedBytes, recordStart) + " differs at value " + valueIndex
+                + ": expected " + expected + " but was " + actual;
+    }
+
+    private static String readLabel(byte[] snapshotBytes, int recordStart) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshotBytes);
+        int labelLength = buffer.getShort(recordStart + 1);
+        return new String(snapshotBytes, recordStart + 3, labelLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path the file to be written, replaced if it exists.
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.write(path, Arrays.copyOf(bytes, size));
+    }
+
+    /**
+     * @param path a file written by {@link #write(Path)}.
+     * @return the snapshot stored in the file.
+     * @throws IOException
+     */
+    public static StateSnapshot read(Path path) throws IOException {
+        return new StateSnapshot(Files.readAllBytes(path));
+    }
+
+    private void writeHeader(byte kind, String label, int count) {
+        byte[] labelBytes = label.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(1 + Short.BYTES + labelBytes.length + Integer.BYTES + count * Integer.BYTES);
+        bytes[size++] = kind;
+        bytes[size++] = (byte) (labelBytes.length >>> 8);
+        bytes[size++] = (byte) labelBytes.length;
+        System.arraycopy(labelBytes, 0, bytes, size, labelBytes.length);
+        size += labelBytes.length;
+        writeInt(count);
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        if (size + extraBytes > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extraBytes));
+        }
+    }
+}
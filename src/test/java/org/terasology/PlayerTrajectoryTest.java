@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.math.geom.Vector3f;
+import org.terasology.math.geom.Vector3i;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlayerTrajectoryTest {
+
+    private static final String MOVE_EVENT = "{\"entityRef_ID\":76,\"timestamp\":%d,\"index\":%d,"
+            + "\"event_class\":\"org.terasology.logic.characters.CharacterMoveInputEvent\",\"event_data\":{\"delta\":17,\"sequeceNumber\":%d}}";
+    private static final String MOUSE_EVENT = "{\"entityRef_ID\":7769,\"timestamp\":%d,\"index\":%d,"
+            + "\"event_class\":\"org.terasology.input.events.MouseAxisEvent\",\"event_data\":{\"target\":7800}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTrajectoryIsLoadedFromRecording() throws Exception {
+        Path recordingPath = folder.getRoot().toPath();
+        String events = "{\"events\":[" + String.format(MOVE_EVENT, 50, 0, 5) + "," + String.format(MOVE_EVENT, 100, 1, 1)
+                + "," + String.format(MOUSE_EVENT, 100, 2) + "," + String.format(MOVE_EVENT, 200, 3, 2)
+                + "," + String.format(MOVE_EVENT, 300, 4, 3) + "]}"; // sequence number 5 has no position.
+        String positions = "{\"2\":[{\"x\":2.0,\"y\":0.0,\"z\":0.0},{\"x\":0.0,\"y\":0.0,\"z\":0.0}],"
+                + "\"1\":[{\"x\":0.0,\"y\":0.0,\"z\":0.0},{\"x\":1.0,\"y\":0.0,\"z\":0.0}],"
+                + "\"3\":[{\"x\":2.0,\"y\":0.0,\"z\":4.0},{\"x\":0.0,\"y\":0.0,\"z\":0.0}]}";
+        String directions = "[{\"directionAndOriginData\":[[{\"x\":0.5,\"y\":-0.5,\"z\":0.0},{\"x\":2.0,\"y\":1.5,\"z\":0.0}]]},"
+                + "{\"directionAndOriginData\":[]}]";
+        Files.write(recordingPath.resolve("events1.json"), events.getBytes(StandardCharsets.UTF_8));
+        Files.write(recordingPath.resolve(RecordingFiles.STATE_EVENT_POSITION), positions.getBytes(StandardCharsets.UTF_8));
+        Files.write(recordingPath.resolve(RecordingFiles.DIRECTION_ORIGIN_LIST), directions.getBytes(StandardCharsets.UTF_8));
+
+        PlayerTrajectory trajectory = PlayerTrajectory.load(recordingPath);
+
+        assertEquals(3, trajectory.size());
+        assertEquals(1, trajectory.getEventIndex(0));
+        assertEquals(3, trajectory.getEventIndex(1));
+        assertEquals(new Vector3f(1, 0, 0), trajectory.getPositionAt(150));
+        assertEquals(new Vector3f(2, 0, 4), trajectory.getPositionAt(1000));
+        assertEquals(1, trajectory.getSampleAt(250));
+        assertEquals(2, trajectory.getFirstSampleFrom(250));
+        assertEquals(-1, trajectory.getSampleAt(50));
+        assertEquals(4, trajectory.getFirstEventIndexWithin(new Vector3i(2, 0, 3), 1.5f));
+        assertEquals(-1, trajectory.getFirstEventIndexWithin(new Vector3i(20, 0, 0), 1.5f));
+        assertEquals(1, trajectory.getDirectionOriginCount(PlayerTrajectory.ATTACK));
+        assertEquals(0, trajectory.getDirectionOriginCount(PlayerTrajectory.ACTIVATE));
+        assertEquals(new Vector3f(2.0f, 1.5f, 0.0f), trajectory.getOrigin(PlayerTrajectory.ATTACK, 0));
+    }
+
+    @Test
+    public void testFirstSampleWithinMatchesLinearSearch() {
+        Random random = new Random(1810);
+        int size = 5000;
+        int[] eventIndices = new int[size];
+        long[] timestamps = new long[size];
+        float[] positions = new float[size * 3];
+        float x = 0;
+        float z = 0;
+        for (int i = 0; i < size; i++) {
+            eventIndices[i] = i * 2;
+            timestamps[i] = i * 17L;
+            x += random.nextFloat() - 0.5f;
+            z += random.nextFloat() - 0.5f;
+            positions[i * 3] = x;
+            positions[i * 3 + 1] = 13.4f;
+            positions[i * 3 + 2] = z;
+        }
+        PlayerTrajectory trajectory = new PlayerTrajectory(eventIndices, timestamps, positions, new float[size * 3], new float[0][]);
+
+        for (int query = 0; query < 200; query++) {
+            Vector3f point = new Vector3f(random.nextFloat() * 40 - 20, 13.4f, random.nextFloat() * 40 - 20);
+            float radius = random.nextFloat() * 3;
+            int expected = -1;
+            for (int i = 0; i < size && expected < 0; i++) {
+                float dx = positions[i * 3] - point.x;
+                float dz = positions[i * 3 + 2] - point.z;
+                if (dx * dx + dz * dz <= radius * radius) {
+                    expected = i;
+                }
+            }
+            assertEquals(expected, trajectory.getFirstSampleWithin(point, radius));
+        }
+    }
+}
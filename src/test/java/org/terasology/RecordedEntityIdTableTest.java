@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.entitySystem.entity.EntityRef;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RecordedEntityIdTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path recordingPath;
+
+    @Before
+    public void createRecording() throws Exception {
+        recordingPath = folder.getRoot().toPath();
+        write(RecordingFiles.FILE_AMOUNT, "2");
+        write(RecordingFiles.REF_ID_MAP, "{\"client\":708}");
+        write("events1.json", "{\"events\":["
+                + "{\"entityRef_ID\":76,\"timestamp\":9737,\"index\":0,\"event_class\":\"CameraTargetChangedEvent\",\"event_data\":{\"OldTarget\":7790,\"NewTarget\":7787}},"
+                + "{\"entityRef_ID\":7769,\"timestamp\":11946,\"index\":1,\"event_class\":\"MouseAxisEvent\",\"event_data\":{\"delta\":0.37,\"target\":7800}}"
+                + "]}");
+        write("events2.json", "{\"events\":["
+                + "{\"entityRef_ID\":76,\"timestamp\":11946,\"index\":2,\"event_class\":\"CharacterMoveInputEvent\",\"event_data\":{\"delta\":289}},"
+                + "{\"entityRef_ID\":708,\"timestamp\":11950,\"index\":3,\"event_class\":\"MouseAxisEvent\",\"event_data\":{\"target\":7800}}"
+                + "]}");
+    }
+
+    private void write(String fileName, String content) throws Exception {
+        Files.write(recordingPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIdsAreInternedAcrossEventFiles() throws Exception {
+        RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+
+        assertEquals(4, table.getEventCount());
+        assertEquals(708, table.getClientId());
+        assertEquals(6, table.size()); // 76, 708, 7769, 7787, 7790 and 7800.
+        assertEquals(table.getEntitySlot(0), table.getEntitySlot(2));
+        assertEquals(table.getTargetSlot(1, RecordedEntityIdTable.TARGET),
+                table.getTargetSlot(3, RecordedEntityIdTable.TARGET));
+        assertEquals(RecordedEntityIdTable.NO_SLOT, table.getTargetSlot(2, RecordedEntityIdTable.TARGET));
+    }
+
+    @Test
+    public void testEveryTargetFieldIsInterned() throws Exception {
+        RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+
+        assertEquals(7790, table.getRecordedId(table.getTargetSlot(0, RecordedEntityIdTable.OLD_TARGET)));
+        assertEquals(7787, table.getRecordedId(table.getTargetSlot(0, RecordedEntityIdTable.NEW_TARGET)));
+        assertEquals(RecordedEntityIdTable.NO_SLOT, table.getTargetSlot(0, RecordedEntityIdTable.TARGET));
+        assertEquals(RecordedEntityIdTable.NO_SLOT, table.getTargetSlot(1, RecordedEntityIdTable.NEW_TARGET));
+    }
+
+    @Test
+    public void testLiveEntitiesAreResolved() throws Exception {
+        RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+        EntityRef character = liveEntity();
+        EntityRef clientEntity = liveEntity();
+        table.resolve(id -> id == 76 ? character : EntityRef.NULL, () -> clientEntity);
+
+        assertSame(character, table.getEntity(0));
+        assertSame(character, table.get(76));
+        assertSame(clientEntity, table.getEntity(3));
+        assertSame(clientEntity, table.get(708));
+        assertSame(EntityRef.NULL, table.getTarget(0, RecordedEntityIdTable.NEW_TARGET));
+    }
+
+    private static EntityRef liveEntity() {
+        EntityRef entity = mock(EntityRef.class);
+        when(entity.exists()).thenReturn(true);
+        return entity;
+    }
+
+    @Test
+    public void testUnresolvedTableReturnsNull() throws Exception {
+        RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+
+        assertSame(EntityRef.NULL, table.getEntity(0));
+        assertSame(EntityRef.NULL, table.getTarget(2, RecordedEntityIdTable.TARGET));
+        assertSame(EntityRef.NULL, table.get(12345));
+    }
+
+    @Test
+    public void testMissingEntityIsLookedUpOncePerRefresh() throws Exception {
+        RecordedEntityIdTable table = RecordedEntityIdTable.load(recordingPath);
+        AtomicInteger lookups = new AtomicInteger();
+        table.resolve(id -> {
+            if (id == 7787) {
+                lookups.incrementAndGet();
+            }
+            return EntityRef.NULL;
+        }, () -> EntityRef.NULL);
+        assertEquals(1, lookups.get());
+
+        assertSame(EntityRef.NULL, table.get(7787));
+        assertSame(EntityRef.NULL, table.getTarget(0, RecordedEntityIdTable.NEW_TARGET));
+        assertEquals(1, lookups.get());
+
+        table.refresh();
+        assertSame(EntityRef.NULL, table.get(7787));
+        assertSame(EntityRef.NULL, table.get(7787));
+        assertEquals(2, lookups.get());
+    }
+}
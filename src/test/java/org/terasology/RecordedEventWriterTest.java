@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordedEventWriterTest {
+
+    private static final String MOUSE_AXIS_EVENT = "org.terasology.input.events.MouseAxisEvent";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEventsAreSplitInSegmentsAndReadBack() throws Exception {
+        Path recordingPath = folder.getRoot().toPath();
+        int eventAmount = 2000;
+        try (RecordedEventWriter writer = new RecordedEventWriter(recordingPath, 16 * 1024, 64)) {
+            for (int i = 0; i < eventAmount; i++) {
+                JsonObject eventData = new JsonObject();
+                eventData.addProperty("delta", i * 0.5f);
+                eventData.addProperty("target", 7800);
+                writer.append(7769, 11946 + i, MOUSE_AXIS_EVENT, eventData);
+            }
+        }
+
+        int fileAmount = RecordingFiles.readFileAmount(recordingPath);
+        assertTrue(fileAmount > 1);
+        for (Path eventFile : RecordingFiles.getEventFiles(recordingPath)) {
+            assertTrue(Files.exists(eventFile));
+        }
+
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            for (int i = 0; i < eventAmount; i++) {
+                assertTrue(reader.next());
+                assertEquals(i, reader.getIndex());
+                assertEquals(11946 + i, reader.getTimestamp());
+                assertEquals(7769, reader.getEntityId());
+                assertEquals(MOUSE_AXIS_EVENT, reader.getEventClass());
+                assertEquals(i * 0.5f, reader.getEventData().get("delta").getAsFloat(), 0);
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testNullMembersAreWritten() throws Exception {
+        Path recordingPath = folder.getRoot().toPath();
+        try (RecordedEventWriter writer = new RecordedEventWriter(recordingPath)) {
+            JsonObject eventData = new JsonObject();
+            eventData.add("target", JsonNull.INSTANCE);
+            writer.append(7769, 11946, MOUSE_AXIS_EVENT, eventData);
+        }
+
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            assertTrue(reader.next());
+            assertTrue(reader.getEventData().has("target"));
+            assertTrue(reader.getEventData().get("target").isJsonNull());
+        }
+    }
+
+    @Test
+    public void testRecordingIsReadableBeforeTheFirstSegmentIsCompleted() throws Exception {
+        Path recordingPath = folder.getRoot().toPath();
+        try (RecordedEventWriter writer = new RecordedEventWriter(recordingPath)) {
+            assertEquals(0, RecordingFiles.readFileAmount(recordingPath));
+            try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+                assertFalse(reader.next());
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRecordingHasOneEventFile() throws Exception {
+        Path recordingPath = folder.getRoot().toPath();
+        new RecordedEventWriter(recordingPath).close();
+
+        assertEquals(1, RecordingFiles.readFileAmount(recordingPath));
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            assertFalse(reader.next());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingVariantGeneratorTest {
+
+    private static final String MOVE_EVENT = "org.terasology.logic.characters.CharacterMoveInputEvent";
+    private static final String BLOCK = "\"hitPosition\":{\"x\":-73.5,\"y\":43.1,\"z\":83.5},\"targetBlockPosition\":{\"x\":-73,\"y\":43,\"z\":84}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path recordingPath;
+
+    @Before
+    public void createRecording() throws Exception {
+        recordingPath = folder.newFolder("Woodcut").toPath();
+        write("manifest.json", "{\"title\":\"Woodcut\",\"seed\":\"abc\"}");
+        write(RecordingFiles.FILE_AMOUNT, "1");
+        write(RecordingFiles.STATE_EVENT_POSITION, "{\"1\":[{\"x\":-72.7,\"y\":43.4,\"z\":79.9},{\"x\":0.0,\"y\":0.0,\"z\":0.0}]}");
+        write(RecordingFiles.DIRECTION_ORIGIN_LIST, "[{\"directionAndOriginData\":[[{\"x\":0.0,\"y\":-0.3,\"z\":0.9},"
+                + "{\"x\":-72.8,\"y\":44.1,\"z\":80.6}]]},{\"directionAndOriginData\":[]}]");
+        write("events1.json", "{\"events\":["
+                + "{\"entityRef_ID\":7769,\"timestamp\":11946,\"index\":0,\"event_class\":\"" + RecordingVariantGenerator.MOUSE_AXIS_EVENT + "\",\"event_data\":{\"value\":-1.5,\"mouseAxis\":\"X\"}},"
+                + "{\"entityRef_ID\":76,\"timestamp\":11946,\"index\":1,\"event_class\":\"" + MOVE_EVENT + "\",\"event_data\":{\"delta\":289}},"
+                + "{\"entityRef_ID\":7769,\"timestamp\":16051,\"index\":2,\"event_class\":\"" + RecordingVariantGenerator.MOUSE_BUTTON_EVENT + "\",\"event_data\":{\"state\":\"DOWN\"," + BLOCK + "}},"
+                + "{\"entityRef_ID\":7769,\"timestamp\":16051,\"index\":3,\"event_class\":\"" + RecordingVariantGenerator.ATTACK_BUTTON + "\",\"event_data\":{\"state\":\"DOWN\"," + BLOCK + "}},"
+                + "{\"entityRef_ID\":76,\"timestamp\":16060,\"index\":4,\"event_class\":\"" + MOVE_EVENT + "\",\"event_data\":{\"delta\":9}}"
+                + "]}");
+        Path worldPath = recordingPath.resolve("worlds").resolve("main");
+        Files.createDirectories(worldPath);
+        try (ZipOutputStream zipStream = new ZipOutputStream(Files.newOutputStream(worldPath.resolve("-1.0.0.chunks.zip")))) {
+            for (String chunkName : new String[] {"-3.0.2.chunk", "-2.0.2.chunk", "-5.0.2.chunk"}) {
+                zipStream.putNextEntry(new ZipEntry(chunkName));
+                zipStream.write(chunkName.getBytes(StandardCharsets.UTF_8));
+                zipStream.closeEntry();
+            }
+        }
+    }
+
+    private void write(String fileName, String content) throws Exception {
+        Files.write(recordingPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<RecordedEventEntry> readEvents(Path path) throws Exception {
+        List<RecordedEventEntry> events = Lists.newArrayList();
+        try (RecordedEventReader reader = RecordedEventReader.open(path)) {
+            while (reader.next()) {
+                events.add(RecordedEventEntry.of(reader));
+            }
+        }
+        return events;
+    }
+
+    @Test
+    public void testMouseAxisEventsAreMultiplied() throws Exception {
+        Path variantPath = folder.getRoot().toPath().resolve("WoodcutMouse");
+        new RecordingVariantGenerator().setMouseAxisFactor(3).generate(recordingPath, variantPath, "WoodcutMouse");
+
+        List<RecordedEventEntry> events = readEvents(variantPath);
+        assertEquals(7, events.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RecordingVariantGenerator.MOUSE_AXIS_EVENT, events.get(i).getEventClass());
+            assertEquals(-0.5, events.get(i).getEventData().get("value").getAsDouble(), 0.0001);
+            assertEquals(i, events.get(i).getIndex());
+        }
+        String manifest = new String(Files.readAllBytes(variantPath.resolve("manifest.json")), StandardCharsets.UTF_8);
+        assertEquals("WoodcutMouse", new JsonParser().parse(manifest).getAsJsonObject().get("title").getAsString());
+        assertTrue(Files.exists(variantPath.resolve(RecordingFiles.STATE_EVENT_POSITION)));
+        assertTrue(Files.exists(variantPath.resolve("worlds").resolve("main").resolve("-1.0.0.chunks.zip")));
+    }
+
+    @Test
+    public void testBlockBreaksAreRepeatedInTheNearestChunks() throws Exception {
+        Path variantPath = folder.getRoot().toPath().resolve("WoodcutBreaks");
+        new RecordingVariantGenerator().setBlockBreakRepeats(2).generate(recordingPath, variantPath, "WoodcutBreaks");
+
+        List<RecordedEventEntry> events = readEvents(variantPath);
+        assertEquals(9, events.size());
+        RecordedEventEntry firstRepeat = events.get(6);
+        assertEquals(RecordingVariantGenerator.ATTACK_BUTTON, firstRepeat.getEventClass());
+        assertEquals(16051 + 16060 - 16051 + 1000, firstRepeat.getTimestamp());
+        JsonObject block = firstRepeat.getEventData().getAsJsonObject("targetBlockPosition");
+        assertEquals(-73 + 32, block.get("x").getAsInt()); // the origin is in chunk -3, the nearest other chunk is -2.
+        assertEquals(-73.5 + 32, firstRepeat.getEventData().getAsJsonObject("hitPosition").get("x").getAsDouble(), 0.0001);
+        assertEquals(-73 - 64, events.get(8).getEventData().getAsJsonObject("targetBlockPosition").get("x").getAsInt());
+
+        String list = new String(Files.readAllBytes(variantPath.resolve(RecordingFiles.DIRECTION_ORIGIN_LIST)), StandardCharsets.UTF_8);
+        JsonArray attacks = new JsonParser().parse(list).getAsJsonArray().get(PlayerTrajectory.ATTACK)
+                .getAsJsonObject().getAsJsonArray("directionAndOriginData");
+        assertEquals(3, attacks.size());
+        assertEquals(-72.8 + 32, attacks.get(1).getAsJsonArray().get(1).getAsJsonObject().get("x").getAsDouble(), 0.0001);
+    }
+
+    @Test
+    public void testJitteredTimestampsStayInOrder() throws Exception {
+        Path variantPath = folder.getRoot().toPath().resolve("WoodcutJitter");
+        new RecordingVariantGenerator().setTimestampJitterMs(20).setSeed(7).generate(recordingPath, variantPath, "WoodcutJitter");
+
+        List<RecordedEventEntry> recordedEvents = readEvents(recordingPath);
+        List<RecordedEventEntry> events = readEvents(variantPath);
+        assertEquals(5, events.size());
+        assertEquals(events.get(0).getTimestamp(), events.get(1).getTimestamp());
+        assertEquals(events.get(2).getTimestamp(), events.get(3).getTimestamp());
+        for (int i = 0; i < events.size(); i++) {
+            assertTrue(Math.abs(events.get(i).getTimestamp() - recordedEvents.get(i).getTimestamp()) <= 20);
+            assertTrue(i == 0 || events.get(i).getTimestamp() >= events.get(i - 1).getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReplayDaemon daemon;
+    private Thread daemonThread;
+    private String token;
+
+    @Before
+    public void startDaemon() throws Exception {
+        daemon = new ReplayDaemon(0, null, folder.getRoot().toPath().resolve("replayDaemon.token"));
+        token = ReplayDaemonClient.readToken(daemon.getTokenPath());
+        daemonThread = new Thread(daemon::serve, "ReplayDaemon");
+        daemonThread.start();
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        daemon.close();
+        daemonThread.join();
+    }
+
+    @Test
+    public void testJobResultsAreStreamedBack() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), token)) {
+            assertTrue(client.submit(null, null, StateSnapshotTest.class.getName(), lines::add));
+        }
+
+        assertTrue(lines.get(0).contains("\"testStarted\""));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"result\"") && line.contains("\"runCount\":2")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"metrics\"") && line.contains("\"replayDurationMs\"")));
+        assertTrue(lines.get(lines.size() - 1).contains("\"done\""));
+    }
+
+    @Test
+    public void testUnknownAssertionClassFails() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), token)) {
+            assertFalse(client.submit("Woodcut", true, "org.terasology.replayTests.MissingTest", lines::add));
+            assertTrue(client.submit(null, null, StateSnapshotTest.class.getName(), line -> { }));
+        }
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"error\""));
+        assertNull(System.getProperty(AcceptanceTestEnvironment.TITLE_PROPERTY));
+    }
+
+    @Test
+    public void testOverridesAreRejectedForOtherTests() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), token)) {
+            assertFalse(client.submit("Woodcut", false, StateSnapshotTest.class.getName(), lines::add));
+        }
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"error\"") && lines.get(0).contains("AcceptanceTestEnvironment"));
+    }
+
+    @Test
+    public void testJobsWithoutTheTokenAreRejected() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), "not the token")) {
+            assertFalse(client.submit(null, null, StateSnapshotTest.class.getName(), lines::add));
+            client.stopDaemon();
+        }
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"error\"") && lines.get(0).contains("token"));
+        assertFalse(daemon.isStopped());
+    }
+
+    @Test
+    public void testTokenFileIsOnlyReadableByItsOwner() throws Exception {
+        Path tokenPath = daemon.getTokenPath();
+        Assume.assumeTrue(Files.getFileStore(tokenPath).supportsFileAttributeView("posix"));
+
+        assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+                Files.getPosixFilePermissions(tokenPath));
+        assertEquals(64, token.length());
+    }
+
+    @Test
+    public void testStopCommandStopsTheDaemon() throws Exception {
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), token)) {
+            client.stopDaemon();
+        }
+        daemonThread.join(5000);
+
+        assertTrue(daemon.isStopped());
+        assertFalse(daemonThread.isAlive());
+        assertFalse(Files.exists(daemon.getTokenPath()));
+    }
+}
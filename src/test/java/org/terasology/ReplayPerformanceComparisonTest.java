@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayPerformanceComparisonTest {
+
+    private static final double[] STEADY_DURATIONS = {10000, 10150, 9900, 10050, 9950};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<ReplayPerformanceRecord> createHistory(double latestDuration, double latestTicksPerSecond) throws Exception {
+        return createHistory(latestDuration, latestTicksPerSecond, true);
+    }
+
+    private List<ReplayPerformanceRecord> createHistory(double latestDuration, double latestTicksPerSecond,
+                                                        boolean isLatestHeadless) throws Exception {
+        Path historyPath = folder.getRoot().toPath();
+        StringBuilder lines = new StringBuilder();
+        for (double duration : STEADY_DURATIONS) {
+            lines.append(createLine(duration, 600 * 1000 / duration, true));
+        }
+        lines.append(createLine(latestDuration, latestTicksPerSecond, isLatestHeadless));
+        ReplayPerformanceHistory history = new ReplayPerformanceHistory(historyPath);
+        Files.write(history.getHistoryFile("WoodCut"), lines.toString().getBytes(StandardCharsets.UTF_8));
+        return history.read("WoodCut");
+    }
+
+    private String createLine(double duration, double ticksPerSecond, boolean headless) {
+        return String.format(Locale.ROOT, "{\"recording\":\"WoodCut\",\"test\":\"WoodCutAcceptanceTest\",\"headless\":%b,"
+                + "\"timeToReplayingMs\":4000,\"replayDurationMs\":%.1f,\"ticksPerSecond\":%.1f,\"gcTimeMs\":40,"
+                + "\"peakHeapBytes\":500000000}%n", headless, duration, ticksPerSecond);
+    }
+
+    @Test
+    public void testSteadyRunHasNoRegressions() throws Exception {
+        List<ReplayPerformanceRecord> history = createHistory(10100, 59.5);
+
+        assertEquals(6, history.size());
+        assertTrue(ReplayPerformanceComparison.findRegressions(history, 10).isEmpty());
+    }
+
+    @Test
+    public void testSlowerRunIsFlagged() throws Exception {
+        List<ReplayPerformanceRecord> history = createHistory(13000, 46);
+        List<String> descriptions = ReplayPerformanceComparison.findRegressions(history, 10);
+
+        assertEquals(2, descriptions.size());
+        assertTrue(descriptions.get(0).startsWith(ReplayPerformanceRecord.REPLAY_DURATION));
+        assertTrue(descriptions.get(1).startsWith(ReplayPerformanceRecord.TICKS_PER_SECOND));
+    }
+
+    @Test
+    public void testFasterRunIsNotFlagged() throws Exception {
+        assertTrue(ReplayPerformanceComparison.findRegressions(createHistory(8000, 75), 10).isEmpty());
+    }
+
+    @Test
+    public void testHeadedRunIsNotComparedAgainstHeadlessRuns() throws Exception {
+        assertTrue(ReplayPerformanceComparison.findRegressions(createHistory(13000, 46, false), 10).isEmpty());
+    }
+
+    @Test
+    public void testShortHistoryIsNotCompared() throws Exception {
+        List<ReplayPerformanceRecord> history = createHistory(13000, 46);
+
+        assertTrue(ReplayPerformanceComparison.findRegressions(history.subList(3, 6), 10).isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StateSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StateSnapshot createSnapshot(float y, int blockId) {
+        StateSnapshot snapshot = new StateSnapshot();
+        snapshot.addFloats("player.location", 25.189344f, y, 8.6651945f);
+        snapshot.addInts("tree.blocks", blockId, 10);
+        return snapshot;
+    }
+
+    @Test
+    public void testSnapshotMatchesAfterWriteAndRead() throws Exception {
+        Path goldenFile = folder.getRoot().toPath().resolve("golden").resolve("end.snapshot");
+        createSnapshot(13.406443f, 5).write(goldenFile);
+
+        assertNull(createSnapshot(13.406443f, 5).compare(StateSnapshot.read(goldenFile), 0.0001f));
+        assertNull(createSnapshot(13.40645f, 5).compare(StateSnapshot.read(goldenFile), 0.0001f));
+    }
+
+    @Test
+    public void testDifferencesAreDescribed() {
+        StateSnapshot golden = createSnapshot(13.406443f, 5);
+
+        String positionDifference = createSnapshot(14f, 5).compare(golden, 0.0001f);
+        assertNotNull(positionDifference);
+        assertTrue(positionDifference.contains("player.location"));
+
+        String blockDifference = createSnapshot(13.406443f, 10).compare(golden, 0.0001f);
+        assertNotNull(blockDifference);
+        assertTrue(blockDifference.contains("tree.blocks"));
+
+        StateSnapshot shorter = new StateSnapshot();
+        shorter.addFloats("player.location", 25.189344f, 13.406443f, 8.6651945f);
+        assertNotNull(shorter.compare(golden, 0.0001f));
+    }
+}
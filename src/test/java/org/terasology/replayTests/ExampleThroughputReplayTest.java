@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.replayTests;
+
+import org.junit.After;
+import org.junit.Test;
+import org.terasology.ReplayMetrics;
+import org.terasology.ReplayOptions;
+import org.terasology.ReplayTestingEnvironment;
+import org.terasology.TestUtils;
+import org.terasology.engine.GameThread;
+import org.terasology.recording.RecordAndReplayStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExampleThroughputReplayTest {
+
+    private static final float TICK_RATE = 60;
+    private static final double TICK_MS = 1000.0 / TICK_RATE;
+
+    private ReplayTestingEnvironment environment = new ReplayTestingEnvironment();
+
+    private Thread replayThread = new Thread() {
+
+        @Override
+        public void run() {
+            try {
+                String replayTitle = "Example";
+                environment.openReplay(replayTitle, true);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @After
+    public void closeReplay() throws Exception {
+        environment.getHost().shutdown();
+        GameThread.reset();
+        replayThread.join();
+    }
+
+    @Test
+    public void testUnboundedSimulatedReplay() {
+        environment.setOptions(new ReplayOptions()
+                .setTargetTickRate(TICK_RATE)
+                .setMaxTicksPerSecond(ReplayOptions.UNBOUNDED)
+                .skipSystems(ReplayOptions.PRESENTATION_SYSTEMS));
+        replayThread.start();
+
+        TestUtils.waitUntil(() -> (environment.isInitialised() && environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAYING));
+        TestUtils.waitUntil(() -> environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAY_FINISHED);
+        ReplayMetrics metrics = environment.getReplayMetrics();
+        TestUtils.waitUntil(() -> !metrics.isRunning());
+
+        assertTrue(metrics.getTickCount() > 0);
+        assertTrue(metrics.getGameTimeMs() > 0);
+        assertTrue(metrics.getTicksPerSecond() > 0);
+        // every simulated tick advances the game time by one step, give or take the ticks around the status changes.
+        double expectedGameTimeMs = metrics.getTickCount() * TICK_MS;
+        assertEquals(expectedGameTimeMs, metrics.getGameTimeMs(), 2 * TICK_MS + expectedGameTimeMs * 0.01);
+    }
+}
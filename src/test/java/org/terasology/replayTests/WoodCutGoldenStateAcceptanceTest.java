@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.replayTests;
+
+import org.junit.Test;
+import org.terasology.AcceptanceTestEnvironment;
+import org.terasology.SnapshotSelection;
+import org.terasology.TestUtils;
+import org.terasology.logic.players.LocalPlayer;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.registry.CoreRegistry;
+import org.terasology.world.WorldProvider;
+
+/**
+ * Checks the Woodcut replay against golden snapshots instead of hand-written block names. The golden snapshots in
+ * "golden/WoodCutGoldenStateAcceptanceTest" hold the two oak logs of the tree at the start and air at the end.
+ */
+public class WoodCutGoldenStateAcceptanceTest extends AcceptanceTestEnvironment {
+
+    private static final Vector3i TREE_BOTTOM = new Vector3i(-73, 43, 84);
+    private static final Vector3i TREE_TOP = new Vector3i(-73, 44, 84);
+
+    @Test
+    public void run() throws Exception {
+        runTest("Woodcut", true);
+    }
+
+    @Override
+    protected void testOnReplayStart() throws Exception {
+        LocalPlayer localPlayer = CoreRegistry.get(LocalPlayer.class);
+        TestUtils.waitUntil(() -> localPlayer.isValid());
+        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
+        TestUtils.waitUntil(() -> (!(worldProvider.getBlock(TREE_BOTTOM).getDisplayName().equals("Unloaded"))));
+    }
+
+    @Override
+    protected void testDuringReplay() throws Exception {
+    }
+
+    @Override
+    protected void testOnReplayEnd() throws Exception {
+    }
+
+    @Override
+    protected void selectGoldenState(SnapshotSelection selection) {
+        selection.blockNames("tree", Region3i.createFromMinMax(TREE_BOTTOM, TREE_TOP));
+    }
+}
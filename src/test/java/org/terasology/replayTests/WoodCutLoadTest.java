@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.replayTests;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.LoadTestReport;
+import org.terasology.RecordedEventReader;
+import org.terasology.ReplayTestingEnvironment;
+import org.terasology.engine.GameThread;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Uses the Woodcut recording as the input of a growing amount of simulated clients on a headless server.
+ */
+public class WoodCutLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WoodCutLoadTest.class);
+    private static final Path RECORDING_PATH = Paths.get("modules/TestReplayModule/assets/recordings/Woodcut");
+    private static final int[] CLIENT_COUNTS = {1, 2, 4};
+    private static final long CLIENT_OFFSET_MS = 500;
+    /** The share of the recorded events a client may fail to decode, such as events of classes that no longer exist. */
+    private static final double MAX_FAILED_SHARE = 0.1;
+
+    private ReplayTestingEnvironment environment;
+
+    @After
+    public void closeLoadTest() {
+        if (environment != null && environment.getHost() != null) {
+            environment.getHost().shutdown();
+        }
+        GameThread.reset();
+    }
+
+    @Test
+    public void testServerScalesWithClients() throws Exception {
+        int eventCount = countEvents(RECORDING_PATH);
+        List<LoadTestReport> reports = Lists.newArrayList();
+        for (int clientCount : CLIENT_COUNTS) {
+            environment = new ReplayTestingEnvironment();
+            LoadTestReport report = environment.openLoadTest("Woodcut", clientCount, CLIENT_OFFSET_MS);
+            GameThread.reset();
+            reports.add(report);
+
+            assertEquals(clientCount, report.getClientCount());
+            assertTrue(report.getTickCount() > 0);
+            // every client sends the whole recording, and each event is either sent or skipped.
+            assertEquals((long) clientCount * eventCount, report.getDispatchedEvents() + report.getFailedEvents());
+            assertTrue(report.getFailedEvents() <= clientCount * eventCount * MAX_FAILED_SHARE);
+            // the clients send the same recording, so they fail to decode the same events.
+            assertEquals(clientCount * reports.get(0).getFailedEvents(), report.getFailedEvents());
+        }
+
+        StringBuilder comparison = new StringBuilder("Woodcut load test, " + eventCount + " events per client:");
+        for (LoadTestReport report : reports) {
+            comparison.append(System.lineSeparator()).append(report);
+        }
+        logger.info(comparison.toString());
+    }
+
+    private static int countEvents(Path recordingPath) throws IOException {
+        int eventCount = 0;
+        try (RecordedEventReader reader = RecordedEventReader.open(recordingPath)) {
+            while (reader.next()) {
+                eventCount++;
+            }
+        }
+        return eventCount;
+    }
+}
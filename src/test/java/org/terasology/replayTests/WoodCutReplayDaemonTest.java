@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.replayTests;
+
+import com.google.common.collect.Lists;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.AcceptanceTestEnvironment;
+import org.terasology.ReplayDaemon;
+import org.terasology.ReplayDaemonClient;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the Woodcut golden state test as a job of a {@link ReplayDaemon}, with the title and the headless flag of the
+ * job replacing the ones of the test, and checks the metrics of the replay the daemon sends back.
+ */
+public class WoodCutReplayDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReplayDaemon daemon;
+    private Thread daemonThread;
+
+    @Before
+    public void startDaemon() throws Exception {
+        daemon = new ReplayDaemon(0, null, folder.getRoot().toPath().resolve("replayDaemon.token"));
+        daemonThread = new Thread(daemon::serve, "ReplayDaemon");
+        daemonThread.start();
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        daemon.close();
+        daemonThread.join();
+    }
+
+    @Test
+    public void testReplayJobSendsReplayMetrics() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        String token = ReplayDaemonClient.readToken(daemon.getTokenPath());
+        try (ReplayDaemonClient client = new ReplayDaemonClient(daemon.getPort(), token)) {
+            assertTrue(client.submit("Woodcut", true, WoodCutGoldenStateAcceptanceTest.class.getName(), lines::add));
+        }
+
+        JsonObject metrics = null;
+        for (String line : lines) {
+            JsonObject response = new JsonParser().parse(line).getAsJsonObject();
+            if ("metrics".equals(response.get("type").getAsString())) {
+                metrics = response;
+            }
+        }
+        assertNotNull(metrics);
+        assertEquals("Woodcut", metrics.get("recording").getAsString());
+        assertEquals(WoodCutGoldenStateAcceptanceTest.class.getSimpleName(), metrics.get("test").getAsString());
+        assertTrue(metrics.get("headless").getAsBoolean());
+        // only the record of a finished replay has ticks; the record of the whole job does not.
+        assertTrue(metrics.get("ticksPerSecond").getAsDouble() > 0);
+        assertTrue(metrics.get("peakHeapBytes").getAsLong() > 0);
+        assertNull(System.getProperty(AcceptanceTestEnvironment.TITLE_PROPERTY));
+        assertNull(System.getProperty(AcceptanceTestEnvironment.HEADLESS_PROPERTY));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.replayTests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.RecordedEventReader;
+import org.terasology.RecordingVariantGenerator;
+import org.terasology.ReplayMetrics;
+import org.terasology.ReplayOptions;
+import org.terasology.ReplayTestingEnvironment;
+import org.terasology.TestUtils;
+import org.terasology.engine.GameThread;
+import org.terasology.recording.RecordAndReplayStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Generates a stress variant of the Woodcut recording outside the source tree and replays it headless as fast as
+ * possible.
+ */
+public class WoodCutStressVariantReplayTest {
+
+    private static final String VARIANT_TITLE = "WoodcutStressVariant";
+    private static final Path WOODCUT_PATH = RecordingVariantGenerator.DEFAULT_RECORDINGS_PATH.resolve("Woodcut");
+
+    private ReplayTestingEnvironment environment = new ReplayTestingEnvironment();
+    private Path variantPath = RecordingVariantGenerator.DEFAULT_VARIANTS_PATH.resolve(VARIANT_TITLE);
+
+    private Thread replayThread = new Thread() {
+
+        @Override
+        public void run() {
+            try {
+                environment.openReplay(VARIANT_TITLE, true);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @Before
+    public void generateVariant() throws Exception {
+        deleteVariant();
+        new RecordingVariantGenerator()
+                .setMouseAxisFactor(4)
+                .setBlockBreakRepeats(2)
+                .setTimestampJitterMs(5)
+                .setSeed(1)
+                .generate(WOODCUT_PATH, variantPath, VARIANT_TITLE);
+        environment.setHomePath(RecordingVariantGenerator.DEFAULT_VARIANT_HOME_PATH);
+    }
+
+    @After
+    public void closeReplay() throws Exception {
+        try {
+            if (environment.getHost() != null) {
+                environment.getHost().shutdown();
+            }
+            GameThread.reset();
+            replayThread.join();
+        } finally {
+            deleteVariant();
+        }
+    }
+
+    private void deleteVariant() throws Exception {
+        if (!Files.exists(variantPath)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(variantPath)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testStressVariantReplaysHeadless() throws Exception {
+        int woodcutEventCount = 0;
+        long woodcutFirstTimestamp = -1;
+        long woodcutLastTimestamp = -1;
+        try (RecordedEventReader reader = RecordedEventReader.open(WOODCUT_PATH)) {
+            while (reader.next()) {
+                woodcutEventCount++;
+                woodcutFirstTimestamp = woodcutFirstTimestamp < 0 ? reader.getTimestamp() : woodcutFirstTimestamp;
+                woodcutLastTimestamp = reader.getTimestamp();
+            }
+        }
+
+        environment.setOptions(new ReplayOptions()
+                .setTargetTickRate(60)
+                .setMaxTicksPerSecond(ReplayOptions.UNBOUNDED)
+                .skipSystems(ReplayOptions.PRESENTATION_SYSTEMS));
+        replayThread.start();
+
+        TestUtils.waitUntil(() -> (environment.isInitialised() && environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAYING));
+        TestUtils.waitUntil(() -> environment.getRecordAndReplayStatus() == RecordAndReplayStatus.REPLAY_FINISHED);
+        ReplayMetrics metrics = environment.getReplayMetrics();
+        TestUtils.waitUntil(() -> !metrics.isRunning());
+
+        assertTrue(metrics.getTickCount() > 0);
+        assertTrue(metrics.getTicksPerSecond() > 0);
+        // the replay finished, so it went through the split mouse axis events and the repeated block breaks.
+        assertTrue(environment.getEntityIdTable().getEventCount() > woodcutEventCount);
+        // the repeated block breaks are appended after the end of Woodcut, so the variant takes longer to replay.
+        assertTrue(metrics.getGameTimeMs() > woodcutLastTimestamp - woodcutFirstTimestamp);
+    }
+}